@@ -0,0 +1,17 @@
+package ru.vang.progressswitcher.core;
+
+/**
+ * Source of time and delayed execution for the state machine. All callbacks must be run on the
+ * thread which uses the state machine.
+ */
+public interface Clock {
+
+    /**
+     * @return monotonic time in milliseconds
+     */
+    public long uptimeMillis();
+
+    public void postDelayed(Runnable runnable, long delayMillis);
+
+    public void removeCallbacks(Runnable runnable);
+}
@@ -0,0 +1,37 @@
+package ru.vang.progressswitcher.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Issues monotonically increasing load tokens, so results of superseded loads can be told apart
+ * from the latest one. Each load takes a token when it starts and passes it along with its
+ * result; the result is stale if a newer token was issued meanwhile. Lock-free and safe to use
+ * from any thread.
+ */
+public final class LoadTokens {
+
+    private final AtomicLong mLatest = new AtomicLong();
+
+    /**
+     * Issue token for a new load. All earlier tokens become stale.
+     *
+     * @return new token, always positive
+     */
+    public long next() {
+        return mLatest.incrementAndGet();
+    }
+
+    /**
+     * @return the latest issued token or 0 if none was issued yet
+     */
+    public long getLatest() {
+        return mLatest.get();
+    }
+
+    /**
+     * @return true if no token newer than the given one was issued
+     */
+    public boolean isCurrent(final long token) {
+        return token >= mLatest.get();
+    }
+}
@@ -0,0 +1,274 @@
+package ru.vang.progressswitcher.core;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Headless state machine of a switcher. Decides which of progress, content, empty or error
+ * states is displayed and when, and leaves the actual display to a {@link Renderer}. Has no
+ * Android dependencies, so it can be tested and benchmarked on the JVM.
+ * <p/>
+ * Two timing rules prevent progress flashing on screen:
+ * <ul>
+ * <li>progress delay: progress is displayed only if it is still requested after the delay, so
+ * fast loads go straight to the result;</li>
+ * <li>minimum progress time: once progress is displayed, it stays at least this long before
+ * another state replaces it.</li>
+ * </ul>
+ * Requests received while a transition waits for its time replace the waiting one. Not thread
+ * safe: all calls must be made on one thread, the same on which the clock runs callbacks.
+ */
+public class StateMachine {
+
+    public static final int STATE_PROGRESS = 0;
+
+    public static final int STATE_CONTENT = 1;
+
+    public static final int STATE_EMPTY = 2;
+
+    public static final int STATE_ERROR = 3;
+
+    private static final int NO_STATE = -1;
+
+    /**
+     * Displays states decided by the state machine.
+     */
+    public interface Renderer {
+
+        /**
+         * Display the state.
+         *
+         * @param state   one of {@code STATE_*} constants
+         * @param animate true if transition should be animated
+         */
+        public void render(int state, boolean animate);
+    }
+
+    /**
+     * Interface definition for a callback to be invoked when displayed state changes.
+     */
+    public interface Listener {
+
+        public void onStateChanged(int previousState, int state);
+    }
+
+    private final Renderer mRenderer;
+
+    private final Clock mClock;
+
+    private final CopyOnWriteArrayList<Listener> mListeners
+            = new CopyOnWriteArrayList<Listener>();
+
+    private int mState = STATE_PROGRESS;
+
+    private int mPendingState = NO_STATE;
+
+    private boolean mPendingAnimate;
+
+    private long mProgressDelay;
+
+    private long mMinProgressTime;
+
+    private long mProgressShownAt;
+
+    private TransitionRecorder mRecorder;
+
+    private int mRecorderId;
+
+    private final Runnable mCommitRunnable = new Runnable() {
+        @Override
+        public void run() {
+            final int state = mPendingState;
+            mPendingState = NO_STATE;
+            if (state != NO_STATE) {
+                commit(state, mPendingAnimate, true);
+            }
+        }
+    };
+
+    public StateMachine(final Renderer renderer, final Clock clock) {
+        if (renderer == null) {
+            throw new NullPointerException("Renderer can't be null");
+        }
+        if (clock == null) {
+            throw new NullPointerException("Clock can't be null");
+        }
+        mRenderer = renderer;
+        mClock = clock;
+        mProgressShownAt = clock.uptimeMillis();
+    }
+
+    public static void checkState(final int state) {
+        if (state < STATE_PROGRESS || state > STATE_ERROR) {
+            throw new IllegalArgumentException("Unknown view type: " + state);
+        }
+    }
+
+    /**
+     * @return lowercase name of the state, e.g. for logs
+     */
+    public static String getStateName(final int state) {
+        switch (state) {
+            case STATE_PROGRESS:
+                return "progress";
+            case STATE_CONTENT:
+                return "content";
+            case STATE_EMPTY:
+                return "empty";
+            case STATE_ERROR:
+                return "error";
+            default:
+                return String.valueOf(state);
+        }
+    }
+
+    /**
+     * Record transitions of this state machine.
+     *
+     * @param recorder recorder, can be shared with other state machines, or null to stop
+     *                 recording
+     * @param id       id of this state machine in the recorder
+     */
+    public void setRecorder(final TransitionRecorder recorder, final int id) {
+        mRecorder = recorder;
+        mRecorderId = id;
+    }
+
+    /**
+     * @param delayMs time progress must stay requested before it is displayed, 0 to display it
+     *                immediately
+     */
+    public void setProgressDelay(final long delayMs) {
+        if (delayMs < 0) {
+            throw new IllegalArgumentException("Delay can't be negative");
+        }
+        mProgressDelay = delayMs;
+    }
+
+    public long getProgressDelay() {
+        return mProgressDelay;
+    }
+
+    /**
+     * @param minTimeMs minimum time progress stays displayed, 0 to replace it immediately
+     */
+    public void setMinProgressTime(final long minTimeMs) {
+        if (minTimeMs < 0) {
+            throw new IllegalArgumentException("Minimum time can't be negative");
+        }
+        mMinProgressTime = minTimeMs;
+    }
+
+    public long getMinProgressTime() {
+        return mMinProgressTime;
+    }
+
+    public void addListener(final Listener listener) {
+        if (listener == null) {
+            throw new NullPointerException("Listener can't be null");
+        }
+        mListeners.add(listener);
+    }
+
+    public void removeListener(final Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Request the state to be displayed, now or when timing rules allow it.
+     *
+     * @param state   one of {@code STATE_*} constants
+     * @param animate true if transition should be animated
+     * @return false if the state is already displayed and nothing was requested
+     */
+    public boolean request(final int state, final boolean animate) {
+        checkState(state);
+        final boolean hadPending = cancelPending();
+        if (state == mState) {
+            return hadPending;
+        }
+        final long delay = getDelay(state);
+        if (delay > 0) {
+            mPendingState = state;
+            mPendingAnimate = animate;
+            mClock.postDelayed(mCommitRunnable, delay);
+        } else {
+            commit(state, animate, false);
+        }
+        return true;
+    }
+
+    /**
+     * Set displayed state without rendering it, e.g. when the renderer was set up in the state.
+     * Drops waiting transition.
+     */
+    public void reset(final int state) {
+        checkState(state);
+        cancelPending();
+        final int previousState = mState;
+        mState = state;
+        if (state == STATE_PROGRESS) {
+            mProgressShownAt = mClock.uptimeMillis();
+        }
+        if (mRecorder != null) {
+            mRecorder.record(mRecorderId, previousState, state, TransitionRecorder.FLAG_RESET,
+                    mClock.uptimeMillis());
+        }
+    }
+
+    /**
+     * @return displayed state
+     */
+    public int getState() {
+        return mState;
+    }
+
+    /**
+     * @return state waiting for its time or -1 if there is no such state
+     */
+    public int getPendingState() {
+        return mPendingState;
+    }
+
+    public boolean hasPendingState() {
+        return mPendingState != NO_STATE;
+    }
+
+    private long getDelay(final int state) {
+        if (state == STATE_PROGRESS) {
+            return mProgressDelay;
+        }
+        if (mState == STATE_PROGRESS && mMinProgressTime > 0) {
+            final long shown = mClock.uptimeMillis() - mProgressShownAt;
+            return Math.max(0, mMinProgressTime - shown);
+        }
+        return 0;
+    }
+
+    private boolean cancelPending() {
+        if (mPendingState == NO_STATE) {
+            return false;
+        }
+        mPendingState = NO_STATE;
+        mClock.removeCallbacks(mCommitRunnable);
+        return true;
+    }
+
+    private void commit(final int state, final boolean animate, final boolean deferred) {
+        final int previousState = mState;
+        mState = state;
+        if (state == STATE_PROGRESS) {
+            mProgressShownAt = mClock.uptimeMillis();
+        }
+        if (mRecorder != null) {
+            // Recorded before rendering, so the dump shows transition which crashed the renderer
+            mRecorder.record(mRecorderId, previousState, state,
+                    (animate ? TransitionRecorder.FLAG_ANIMATED : 0)
+                            | (deferred ? TransitionRecorder.FLAG_DEFERRED : 0),
+                    mClock.uptimeMillis());
+        }
+        mRenderer.render(state, animate);
+        for (final Listener listener : mListeners) {
+            listener.onStateChanged(previousState, state);
+        }
+    }
+}
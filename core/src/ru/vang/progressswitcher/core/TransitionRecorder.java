@@ -0,0 +1,141 @@
+package ru.vang.progressswitcher.core;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+/**
+ * Fixed-size ring buffer of recent state transitions, to be attached to crash and ANR reports.
+ * All entries are preallocated as primitive arrays, so recording doesn't allocate and the
+ * oldest entries are overwritten once the buffer is full. One recorder can be shared by many
+ * state machines, each identified by its own id.
+ * <p/>
+ * Recording and dumping are synchronized, so the buffer can be dumped from any thread, e.g. an
+ * uncaught exception handler.
+ *
+ * @see StateMachine#setRecorder(TransitionRecorder, int)
+ */
+public final class TransitionRecorder {
+
+    /**
+     * Transition was animated.
+     */
+    public static final int FLAG_ANIMATED = 1;
+
+    /**
+     * Transition was applied after progress delay or minimum progress time.
+     */
+    public static final int FLAG_DEFERRED = 1 << 1;
+
+    /**
+     * State was set by {@link StateMachine#reset(int)} without rendering.
+     */
+    public static final int FLAG_RESET = 1 << 2;
+
+    private static final int STATE_BITS = 4;
+
+    private static final int STATE_MASK = (1 << STATE_BITS) - 1;
+
+    private final int[] mIds;
+
+    private final long[] mTimes;
+
+    /**
+     * Previous state, state and flags packed into one int.
+     */
+    private final int[] mTransitions;
+
+    private int mNext;
+
+    private long mRecorded;
+
+    public TransitionRecorder(final int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        mIds = new int[capacity];
+        mTimes = new long[capacity];
+        mTransitions = new int[capacity];
+    }
+
+    public int getCapacity() {
+        return mIds.length;
+    }
+
+    /**
+     * @return number of transitions recorded since creation or the last {@link #clear()},
+     * including overwritten ones
+     */
+    public synchronized long getRecordedCount() {
+        return mRecorded;
+    }
+
+    /**
+     * Record transition, overwriting the oldest entry if the buffer is full.
+     *
+     * @param id            id of the state machine
+     * @param previousState state displayed before the transition
+     * @param state         state displayed after the transition
+     * @param flags         combination of {@code FLAG_*} constants
+     * @param timeMs        time of the transition
+     */
+    public synchronized void record(final int id, final int previousState, final int state,
+            final int flags, final long timeMs) {
+        mIds[mNext] = id;
+        mTimes[mNext] = timeMs;
+        mTransitions[mNext] = (flags << (STATE_BITS * 2)) | ((previousState & STATE_MASK)
+                << STATE_BITS) | (state & STATE_MASK);
+        mNext = mNext + 1 == mIds.length ? 0 : mNext + 1;
+        mRecorded++;
+    }
+
+    public synchronized void clear() {
+        mNext = 0;
+        mRecorded = 0;
+    }
+
+    /**
+     * Write recorded transitions from the oldest to the newest, one per line.
+     */
+    public synchronized void dump(final PrintWriter writer) {
+        final int capacity = mIds.length;
+        final int count = (int) Math.min(mRecorded, capacity);
+        writer.print("Transitions: ");
+        writer.print(count);
+        writer.print(" of ");
+        writer.println(mRecorded);
+        int index = count < capacity ? 0 : mNext;
+        for (int i = 0; i < count; i++) {
+            final int transition = mTransitions[index];
+            writer.print(mTimes[index]);
+            writer.print(" #");
+            writer.print(Integer.toHexString(mIds[index]));
+            writer.print(' ');
+            writer.print(StateMachine.getStateName((transition >> STATE_BITS) & STATE_MASK));
+            writer.print(" -> ");
+            writer.print(StateMachine.getStateName(transition & STATE_MASK));
+            final int flags = transition >>> (STATE_BITS * 2);
+            if ((flags & FLAG_ANIMATED) != 0) {
+                writer.print(" animated");
+            }
+            if ((flags & FLAG_DEFERRED) != 0) {
+                writer.print(" deferred");
+            }
+            if ((flags & FLAG_RESET) != 0) {
+                writer.print(" reset");
+            }
+            writer.println();
+            index = index + 1 == capacity ? 0 : index + 1;
+        }
+        writer.flush();
+    }
+
+    /**
+     * @return recorded transitions in the format of {@link #dump(PrintWriter)}
+     */
+    public String dump() {
+        final StringWriter writer = new StringWriter();
+        dump(new PrintWriter(writer));
+
+        return writer.toString();
+    }
+}
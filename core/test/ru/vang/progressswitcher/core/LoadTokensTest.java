@@ -0,0 +1,58 @@
+package ru.vang.progressswitcher.core;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LoadTokensTest {
+
+    @Test
+    public void anyTokenIsCurrentBeforeFirstLoad() {
+        final LoadTokens tokens = new LoadTokens();
+
+        assertEquals(0, tokens.getLatest());
+        assertTrue(tokens.isCurrent(0));
+    }
+
+    @Test
+    public void newTokenSupersedesEarlierOnes() {
+        final LoadTokens tokens = new LoadTokens();
+        final long first = tokens.next();
+        final long second = tokens.next();
+
+        assertTrue(second > first);
+        assertFalse(tokens.isCurrent(first));
+        assertTrue(tokens.isCurrent(second));
+        assertEquals(second, tokens.getLatest());
+    }
+
+    @Test
+    public void issuesUniqueTokensAcrossThreads() throws InterruptedException {
+        final LoadTokens tokens = new LoadTokens();
+        final Set<Long> issued = Collections.synchronizedSet(new HashSet<Long>());
+        final Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 1000; j++) {
+                        issued.add(tokens.next());
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(4000, issued.size());
+        assertEquals(4000, tokens.getLatest());
+    }
+}
@@ -0,0 +1,164 @@
+package ru.vang.progressswitcher.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StateMachineTest {
+
+    private TestClock mClock;
+
+    private List<Integer> mRendered;
+
+    private StateMachine mStateMachine;
+
+    @Before
+    public void setUp() {
+        mClock = new TestClock();
+        mRendered = new ArrayList<Integer>();
+        mStateMachine = new StateMachine(new StateMachine.Renderer() {
+            @Override
+            public void render(final int state, final boolean animate) {
+                mRendered.add(state);
+            }
+        }, mClock);
+    }
+
+    @Test
+    public void startsInProgress() {
+        assertEquals(StateMachine.STATE_PROGRESS, mStateMachine.getState());
+        assertFalse(mStateMachine.hasPendingState());
+    }
+
+    @Test
+    public void rendersImmediatelyWithoutTimingRules() {
+        assertTrue(mStateMachine.request(StateMachine.STATE_CONTENT, false));
+
+        assertEquals(StateMachine.STATE_CONTENT, mStateMachine.getState());
+        assertRendered(StateMachine.STATE_CONTENT);
+    }
+
+    @Test
+    public void ignoresRequestOfDisplayedState() {
+        assertFalse(mStateMachine.request(StateMachine.STATE_PROGRESS, true));
+
+        assertRendered();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownState() {
+        mStateMachine.request(4, true);
+    }
+
+    @Test
+    public void displaysProgressAfterDelay() {
+        mStateMachine.request(StateMachine.STATE_CONTENT, false);
+        mStateMachine.setProgressDelay(300);
+
+        assertTrue(mStateMachine.request(StateMachine.STATE_PROGRESS, true));
+        mClock.advance(299);
+        assertEquals(StateMachine.STATE_CONTENT, mStateMachine.getState());
+        assertEquals(StateMachine.STATE_PROGRESS, mStateMachine.getPendingState());
+
+        mClock.advance(1);
+        assertEquals(StateMachine.STATE_PROGRESS, mStateMachine.getState());
+        assertFalse(mStateMachine.hasPendingState());
+        assertRendered(StateMachine.STATE_CONTENT, StateMachine.STATE_PROGRESS);
+    }
+
+    @Test
+    public void skipsProgressOfFastLoad() {
+        mStateMachine.request(StateMachine.STATE_CONTENT, false);
+        mStateMachine.setProgressDelay(300);
+
+        mStateMachine.request(StateMachine.STATE_PROGRESS, true);
+        mClock.advance(100);
+        // Content is still displayed, so the request only drops pending progress
+        assertTrue(mStateMachine.request(StateMachine.STATE_CONTENT, true));
+        mClock.advance(1000);
+
+        assertEquals(StateMachine.STATE_CONTENT, mStateMachine.getState());
+        assertEquals(0, mClock.getPendingCount());
+        assertRendered(StateMachine.STATE_CONTENT);
+    }
+
+    @Test
+    public void holdsProgressForMinimumTime() {
+        mStateMachine.setMinProgressTime(500);
+        mStateMachine.reset(StateMachine.STATE_PROGRESS);
+        mClock.advance(200);
+
+        assertTrue(mStateMachine.request(StateMachine.STATE_CONTENT, true));
+        assertEquals(StateMachine.STATE_PROGRESS, mStateMachine.getState());
+        mClock.advance(299);
+        assertRendered();
+
+        mClock.advance(1);
+        assertEquals(StateMachine.STATE_CONTENT, mStateMachine.getState());
+        assertRendered(StateMachine.STATE_CONTENT);
+    }
+
+    @Test
+    public void replacesProgressImmediatelyAfterMinimumTime() {
+        mStateMachine.setMinProgressTime(500);
+        mStateMachine.reset(StateMachine.STATE_PROGRESS);
+        mClock.advance(600);
+
+        mStateMachine.request(StateMachine.STATE_ERROR, true);
+
+        assertRendered(StateMachine.STATE_ERROR);
+    }
+
+    @Test
+    public void laterRequestReplacesPendingOne() {
+        mStateMachine.setMinProgressTime(500);
+        mStateMachine.reset(StateMachine.STATE_PROGRESS);
+
+        mStateMachine.request(StateMachine.STATE_CONTENT, true);
+        mStateMachine.request(StateMachine.STATE_ERROR, true);
+        mClock.advance(500);
+
+        assertEquals(StateMachine.STATE_ERROR, mStateMachine.getState());
+        assertRendered(StateMachine.STATE_ERROR);
+    }
+
+    @Test
+    public void resetDropsPendingState() {
+        mStateMachine.setMinProgressTime(500);
+        mStateMachine.request(StateMachine.STATE_CONTENT, true);
+
+        mStateMachine.reset(StateMachine.STATE_PROGRESS);
+        mClock.advance(1000);
+
+        assertEquals(StateMachine.STATE_PROGRESS, mStateMachine.getState());
+        assertRendered();
+    }
+
+    @Test
+    public void notifiesListenersAfterRender() {
+        final List<String> events = new ArrayList<String>();
+        mStateMachine.addListener(new StateMachine.Listener() {
+            @Override
+            public void onStateChanged(final int previousState, final int state) {
+                events.add(previousState + "->" + state + " rendered " + mRendered.size());
+            }
+        });
+
+        mStateMachine.request(StateMachine.STATE_EMPTY, true);
+
+        assertEquals(1, events.size());
+        assertEquals(StateMachine.STATE_PROGRESS + "->" + StateMachine.STATE_EMPTY
+                + " rendered 1", events.get(0));
+    }
+
+    private void assertRendered(final Integer... states) {
+        assertEquals(Arrays.asList(states), mRendered);
+    }
+}
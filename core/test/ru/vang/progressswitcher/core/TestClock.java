@@ -0,0 +1,62 @@
+package ru.vang.progressswitcher.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Clock which runs posted callbacks only when the time is advanced.
+ */
+class TestClock implements Clock {
+
+    private final List<Long> mTimes = new ArrayList<Long>();
+
+    private final List<Runnable> mCallbacks = new ArrayList<Runnable>();
+
+    private long mNow;
+
+    @Override
+    public long uptimeMillis() {
+        return mNow;
+    }
+
+    @Override
+    public void postDelayed(final Runnable runnable, final long delayMillis) {
+        mTimes.add(mNow + delayMillis);
+        mCallbacks.add(runnable);
+    }
+
+    @Override
+    public void removeCallbacks(final Runnable runnable) {
+        for (int i = mCallbacks.size() - 1; i >= 0; i--) {
+            if (mCallbacks.get(i) == runnable) {
+                mCallbacks.remove(i);
+                mTimes.remove(i);
+            }
+        }
+    }
+
+    int getPendingCount() {
+        return mCallbacks.size();
+    }
+
+    /**
+     * Advance time, running due callbacks in order of their time.
+     */
+    void advance(final long millis) {
+        final long target = mNow + millis;
+        while (true) {
+            int next = -1;
+            for (int i = 0; i < mTimes.size(); i++) {
+                if (mTimes.get(i) <= target && (next < 0 || mTimes.get(i) < mTimes.get(next))) {
+                    next = i;
+                }
+            }
+            if (next < 0) {
+                break;
+            }
+            mNow = mTimes.remove(next);
+            mCallbacks.remove(next).run();
+        }
+        mNow = target;
+    }
+}
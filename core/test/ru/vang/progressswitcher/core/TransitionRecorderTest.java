@@ -0,0 +1,74 @@
+package ru.vang.progressswitcher.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TransitionRecorderTest {
+
+    @Test
+    public void dumpsEntriesOldestFirst() {
+        final TransitionRecorder recorder = new TransitionRecorder(4);
+        recorder.record(0x1a, StateMachine.STATE_PROGRESS, StateMachine.STATE_CONTENT,
+                TransitionRecorder.FLAG_ANIMATED | TransitionRecorder.FLAG_DEFERRED, 10);
+        recorder.record(0x1a, StateMachine.STATE_CONTENT, StateMachine.STATE_PROGRESS,
+                TransitionRecorder.FLAG_RESET, 20);
+
+        assertEquals("Transitions: 2 of 2\n"
+                + "10 #1a progress -> content animated deferred\n"
+                + "20 #1a content -> progress reset\n", normalize(recorder.dump()));
+    }
+
+    @Test
+    public void overwritesOldestEntriesWhenFull() {
+        final TransitionRecorder recorder = new TransitionRecorder(3);
+        for (int i = 1; i <= 5; i++) {
+            recorder.record(i, StateMachine.STATE_PROGRESS, StateMachine.STATE_ERROR, 0, i * 10);
+        }
+
+        assertEquals(5, recorder.getRecordedCount());
+        assertEquals("Transitions: 3 of 5\n"
+                + "30 #3 progress -> error\n"
+                + "40 #4 progress -> error\n"
+                + "50 #5 progress -> error\n", normalize(recorder.dump()));
+    }
+
+    @Test
+    public void clearDropsEntries() {
+        final TransitionRecorder recorder = new TransitionRecorder(2);
+        recorder.record(1, StateMachine.STATE_PROGRESS, StateMachine.STATE_EMPTY, 0, 1);
+        recorder.clear();
+
+        assertEquals("Transitions: 0 of 0\n", normalize(recorder.dump()));
+    }
+
+    @Test
+    public void stateMachineRecordsCommitsAndResets() {
+        final TestClock clock = new TestClock();
+        final StateMachine stateMachine = new StateMachine(new StateMachine.Renderer() {
+            @Override
+            public void render(final int state, final boolean animate) {
+            }
+        }, clock);
+        final TransitionRecorder recorder = new TransitionRecorder(8);
+        stateMachine.setRecorder(recorder, 0x2b);
+        stateMachine.setMinProgressTime(100);
+
+        stateMachine.request(StateMachine.STATE_CONTENT, true);
+        clock.advance(100);
+        stateMachine.reset(StateMachine.STATE_PROGRESS);
+
+        assertEquals("Transitions: 2 of 2\n"
+                + "100 #2b progress -> content animated deferred\n"
+                + "100 #2b content -> progress reset\n", normalize(recorder.dump()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyCapacity() {
+        new TransitionRecorder(0);
+    }
+
+    private static String normalize(final String dump) {
+        return dump.replace(System.getProperty("line.separator"), "\n");
+    }
+}
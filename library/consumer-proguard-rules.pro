@@ -0,0 +1,12 @@
+# Rules applied to apps which use the library.
+
+# Strip switcher diagnostics from release builds. Requires ProGuard optimization
+# to be enabled, e.g. with proguard-android-optimize.txt.
+-assumenosideeffects class ru.vang.progressswitcher.SwitcherStrictMode {
+    public static void setPolicy(...);
+    public static void resetViolationCounts();
+    static void onRedundantTransition(...);
+    static void onSwitcherCall(...);
+    static void onUnusedStateView(...);
+    static void onDetachedTransition(...);
+}
@@ -0,0 +1,108 @@
+package ru.vang.progressswitcher;
+
+import android.database.DataSetObserver;
+import android.widget.Adapter;
+
+/**
+ * Switches between empty and content states of a switcher following the data of an adapter, the
+ * same way {@link android.widget.AdapterView#setEmptyView(android.view.View) AdapterView} does
+ * for its empty view. Data set changes are handled at most once per frame, and the state is
+ * changed only if it differs from the one derived from the adapter. Until the first data set
+ * change the switcher keeps its current state, so progress displayed while the data is loading
+ * isn't replaced by the empty view.
+ * <p/>
+ * Must be used on the main thread.
+ */
+public class AdapterBinding {
+
+    private final Switcher mSwitcher;
+
+    private final Adapter mAdapter;
+
+    private boolean mAnimate = true;
+
+    private boolean mBound;
+
+    private final FrameTask mUpdateTask = new FrameTask(new Runnable() {
+        @Override
+        public void run() {
+            update();
+        }
+    });
+
+    private final DataSetObserver mDataSetObserver = new DataSetObserver() {
+        @Override
+        public void onChanged() {
+            mUpdateTask.post();
+        }
+
+        @Override
+        public void onInvalidated() {
+            mUpdateTask.post();
+        }
+    };
+
+    /**
+     * Create binding and register it as observer of the adapter.
+     *
+     * @param switcher switcher with empty view
+     * @param adapter  adapter which data defines the state
+     */
+    public AdapterBinding(final Switcher switcher, final Adapter adapter) {
+        if (switcher == null) {
+            throw new NullPointerException("Switcher can't be null");
+        }
+        if (adapter == null) {
+            throw new NullPointerException("Adapter can't be null");
+        }
+        mSwitcher = switcher;
+        mAdapter = adapter;
+        mAdapter.registerDataSetObserver(mDataSetObserver);
+        mBound = true;
+    }
+
+    /**
+     * @param animate true to animate transitions caused by data set changes
+     */
+    public void setAnimate(final boolean animate) {
+        mAnimate = animate;
+    }
+
+    public Adapter getAdapter() {
+        return mAdapter;
+    }
+
+    /**
+     * Apply the state derived from the adapter right away, e.g. after the data was loaded
+     * without notifying observers.
+     */
+    public void update() {
+        mUpdateTask.cancel();
+        if (!mBound) {
+            return;
+        }
+        if (mAdapter.isEmpty()) {
+            if (!mSwitcher.isEmptyViewDisplayed()) {
+                mSwitcher.showEmpty(mAnimate);
+            }
+        } else if (!mSwitcher.isContentDisplayed()) {
+            mSwitcher.showContent(mAnimate);
+        }
+    }
+
+    /**
+     * Stop observing the adapter. Pending update is dropped.
+     */
+    public void unbind() {
+        if (!mBound) {
+            return;
+        }
+        mBound = false;
+        mUpdateTask.cancel();
+        mAdapter.unregisterDataSetObserver(mDataSetObserver);
+    }
+
+    public boolean isBound() {
+        return mBound;
+    }
+}
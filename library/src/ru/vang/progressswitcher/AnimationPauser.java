@@ -0,0 +1,120 @@
+package ru.vang.progressswitcher;
+
+import android.graphics.drawable.Animatable;
+import android.graphics.drawable.Drawable;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.ProgressBar;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pauses animations of a view hierarchy which keep running while nothing of it is visible:
+ * animated drawables, including indeterminate drawables of progress bars, and property animator
+ * transitions, and resumes them later. Visibility of the views isn't changed. Transitions are
+ * paused in place on API 19+, so they continue where they stopped. Drawables are restarted only
+ * if they are still displayed by a visible view of the hierarchy on resume, so a drawable
+ * replaced or hidden meanwhile doesn't keep animating unseen.
+ */
+final class AnimationPauser {
+
+    private final List<Animatable> mAnimatables = new ArrayList<Animatable>();
+
+    private final List<View> mTransitions = new ArrayList<View>();
+
+    private boolean mPaused;
+
+    void pause(final View root) {
+        if (mPaused) {
+            return;
+        }
+        mPaused = true;
+        pauseView(root, true);
+    }
+
+    /**
+     * Pause animations started in the hierarchy after it was paused, e.g. by state view shown
+     * meanwhile. Does nothing if the hierarchy isn't paused.
+     */
+    void pauseStarted(final View root) {
+        if (mPaused) {
+            pauseView(root, true);
+        }
+    }
+
+    void resume(final View root) {
+        if (!mPaused) {
+            return;
+        }
+        mPaused = false;
+        for (int i = 0, size = mTransitions.size(); i < size; i++) {
+            PropertyAnimatorTransition.resume(mTransitions.get(i));
+        }
+        resumeView(root, true);
+        mTransitions.clear();
+        mAnimatables.clear();
+    }
+
+    boolean isPaused() {
+        return mPaused;
+    }
+
+    private void pauseView(final View view, final boolean root) {
+        // Hidden views stop their animations themselves, unless the hidden view is the root
+        if (!root && view.getVisibility() != View.VISIBLE) {
+            return;
+        }
+        if (PropertyAnimatorTransition.pause(view)) {
+            mTransitions.add(view);
+        }
+        pauseDrawable(view.getBackground());
+        if (view instanceof ImageView) {
+            pauseDrawable(((ImageView) view).getDrawable());
+        }
+        if (view instanceof ProgressBar && ((ProgressBar) view).isIndeterminate()) {
+            // Progress bars animate Animatable indeterminate drawables by starting them
+            pauseDrawable(((ProgressBar) view).getIndeterminateDrawable());
+        }
+        if (view instanceof ViewGroup) {
+            final ViewGroup group = (ViewGroup) view;
+            for (int i = 0, count = group.getChildCount(); i < count; i++) {
+                pauseView(group.getChildAt(i), false);
+            }
+        }
+    }
+
+    private void resumeView(final View view, final boolean root) {
+        if (!root && view.getVisibility() != View.VISIBLE) {
+            return;
+        }
+        resumeDrawable(view.getBackground());
+        if (view instanceof ImageView) {
+            resumeDrawable(((ImageView) view).getDrawable());
+        }
+        if (view instanceof ProgressBar && ((ProgressBar) view).isIndeterminate()) {
+            resumeDrawable(((ProgressBar) view).getIndeterminateDrawable());
+        }
+        if (view instanceof ViewGroup) {
+            final ViewGroup group = (ViewGroup) view;
+            for (int i = 0, count = group.getChildCount(); i < count; i++) {
+                resumeView(group.getChildAt(i), false);
+            }
+        }
+    }
+
+    private void resumeDrawable(final Drawable drawable) {
+        if (drawable instanceof Animatable && mAnimatables.remove(drawable)) {
+            ((Animatable) drawable).start();
+        }
+    }
+
+    private void pauseDrawable(final Drawable drawable) {
+        if (drawable instanceof Animatable && ((Animatable) drawable).isRunning()) {
+            final Animatable animatable = (Animatable) drawable;
+            animatable.stop();
+            mAnimatables.add(animatable);
+        }
+    }
+}
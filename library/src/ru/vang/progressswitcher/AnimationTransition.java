@@ -0,0 +1,90 @@
+package ru.vang.progressswitcher;
+
+import android.content.Context;
+import android.view.View;
+import android.view.animation.Animation;
+import android.view.animation.AnimationUtils;
+
+/**
+ * Transition based on view animations loaded from resources. This is the default transition
+ * which is used by {@link Switcher#setCustomAnimation(int, int)}.
+ */
+public class AnimationTransition implements TransitionEngine {
+
+    private static final long NO_BATCH = -1;
+
+    private static long sBatchStartTime = NO_BATCH;
+
+    private final Context mContext;
+
+    private final int mAnimationIn;
+
+    private final int mAnimationOut;
+
+    public AnimationTransition(final Context context) {
+        this(context, ProgressSwitcher.DEFAULT_ANIMATION_IN,
+                ProgressSwitcher.DEFAULT_ANIMATION_OUT);
+    }
+
+    /**
+     * @param context      context to load animations
+     * @param animationIn  Animation for appearing view
+     * @param animationOut Animation for disappearing view
+     */
+    public AnimationTransition(final Context context, final int animationIn,
+            final int animationOut) {
+        mContext = context;
+        mAnimationIn = animationIn;
+        mAnimationOut = animationOut;
+    }
+
+    /**
+     * Animations started until {@link #endBatch()} will share the same start time. Must be
+     * called from the main thread.
+     */
+    static void beginBatch() {
+        sBatchStartTime = AnimationUtils.currentAnimationTimeMillis();
+    }
+
+    static void endBatch() {
+        sBatchStartTime = NO_BATCH;
+    }
+
+    @Override
+    public void transition(final View from, final View to, final boolean animate) {
+        if (animate) {
+            if (from != null) {
+                startAnimation(from, mAnimationOut);
+            }
+            if (to != null) {
+                startAnimation(to, mAnimationIn);
+            }
+        } else {
+            if (from != null) {
+                from.clearAnimation();
+            }
+            if (to != null) {
+                to.clearAnimation();
+            }
+        }
+
+        if (from != null) {
+            from.setVisibility(View.GONE);
+        }
+        if (to != null) {
+            to.setVisibility(View.VISIBLE);
+        }
+    }
+
+    private void startAnimation(final View view, final int animationResId) {
+        final Animation animation = AnimationUtils.loadAnimation(mContext, animationResId);
+        if (sBatchStartTime == NO_BATCH) {
+            view.startAnimation(animation);
+        } else {
+            // Start all animations of the batch from the same frame
+            animation.setStartTime(sBatchStartTime);
+            view.setAnimation(animation);
+            view.invalidate();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package ru.vang.progressswitcher;
+
+import android.os.Process;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Inflates layouts on a background thread and delivers the views on the main thread, so heavy
+ * content layouts don't stall progress animations. Each request inflates with its own clone of
+ * the context inflater, because inflaters aren't thread safe. If a layout can't be inflated off
+ * the main thread, e.g. one of its views creates a {@link android.os.Handler}, it is inflated
+ * again on the main thread. In {@link TestMode} layouts are inflated synchronously.
+ */
+final class AsyncContentInflater {
+
+    private static final String TAG = "AsyncContentInflater";
+
+    private static final Executor sExecutor = Executors.newSingleThreadExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    return new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_DEFAULT);
+                            runnable.run();
+                        }
+                    }, "SwitcherInflater");
+                }
+            });
+
+    /**
+     * Receives inflated view on the main thread.
+     */
+    interface Callback {
+
+        void onInflated(View view);
+    }
+
+    private AsyncContentInflater() {
+    }
+
+    /**
+     * Inflate layout without attaching it to the parent. Must be called on the main thread.
+     *
+     * @param parent parent which generates layout params of the root view
+     */
+    static void inflate(final LayoutInflater inflater, final int layoutResId,
+            final ViewGroup parent, final Callback callback) {
+        if (TestMode.isEnabled()) {
+            callback.onInflated(inflateTraced(inflater, layoutResId, parent));
+            return;
+        }
+        final LayoutInflater threadInflater = inflater.cloneInContext(inflater.getContext());
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                View view = null;
+                try {
+                    view = inflateTraced(threadInflater, layoutResId, parent);
+                } catch (RuntimeException e) {
+                    Log.w(TAG, "Can't inflate layout in background, inflating on main thread", e);
+                }
+                final View inflated = view;
+                SwitcherClock.get().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onInflated(inflated != null ? inflated
+                                : inflateTraced(inflater, layoutResId, parent));
+                    }
+                });
+            }
+        });
+    }
+
+    private static View inflateTraced(final LayoutInflater inflater, final int layoutResId,
+            final ViewGroup parent) {
+        final boolean traced = SwitcherTrace.isEnabled() && SwitcherTrace.begin("inflateAsync",
+                inflater.getContext().getResources().getResourceEntryName(layoutResId));
+        try {
+            return inflater.inflate(layoutResId, parent, false);
+        } finally {
+            SwitcherTrace.end(traced);
+        }
+    }
+}
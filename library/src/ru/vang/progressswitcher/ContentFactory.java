@@ -0,0 +1,25 @@
+package ru.vang.progressswitcher;
+
+import android.content.Context;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * Creates content view the first time content is displayed, so that sessions which end in empty
+ * or error state don't build content hierarchy at all.
+ *
+ * @see ProgressSwitcher#setContentFactory(ContentFactory)
+ */
+public interface ContentFactory {
+
+    /**
+     * Called on the main thread right before content is displayed for the first time.
+     *
+     * @param context   context of the switcher
+     * @param container content container, which generates layout params of the view; the view
+     *                  must not be added to it
+     * @return content view, can't be null
+     */
+    public View createContentView(Context context, ViewGroup container);
+
+}
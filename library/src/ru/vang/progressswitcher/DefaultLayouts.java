@@ -0,0 +1,210 @@
+package ru.vang.progressswitcher;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.content.res.XmlResourceParser;
+import android.util.SparseBooleanArray;
+import android.util.TypedValue;
+import android.view.Gravity;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.FrameLayout;
+import android.widget.LinearLayout;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+
+import org.xmlpull.v1.XmlPullParser;
+
+/**
+ * Builds default library layouts in code instead of inflating them from XML. Code is used only
+ * while the layout resource is the one shipped with the library, which is marked with the
+ * {@code defaultLayout} attribute on the root tag. If an app overrides {@code progress_view},
+ * {@code empty_view}, {@code error_view} or {@code switcher_layout} by a layout without the
+ * marker, its layout is inflated as usual. The marker is checked once per layout and process.
+ */
+final class DefaultLayouts {
+
+    private static final SparseBooleanArray sBuiltIn = new SparseBooleanArray();
+
+    private DefaultLayouts() {
+    }
+
+    /**
+     * Same as {@link LayoutInflater#inflate(int, ViewGroup, boolean)}, but builds default
+     * library layouts in code.
+     *
+     * @return the root of the created hierarchy, or the parent if view was attached to it
+     */
+    static View inflate(final Context context, final int layoutResId, final ViewGroup parent,
+            final boolean attachToParent) {
+        final boolean traced = SwitcherTrace.isEnabled() && SwitcherTrace.begin("inflate",
+                context.getResources().getResourceEntryName(layoutResId));
+        try {
+            return inflateInternal(context, layoutResId, parent, attachToParent);
+        } finally {
+            SwitcherTrace.end(traced);
+        }
+    }
+
+    private static View inflateInternal(final Context context, final int layoutResId,
+            final ViewGroup parent, final boolean attachToParent) {
+        if (!isBuiltIn(context.getResources(), layoutResId)) {
+            return LayoutInflater.from(context).inflate(layoutResId, parent, attachToParent);
+        }
+
+        final View view;
+        if (layoutResId == R.layout.progress_view) {
+            view = createProgressView(context);
+        } else if (layoutResId == R.layout.empty_view) {
+            view = createEmptyView(context);
+        } else if (layoutResId == R.layout.error_view) {
+            view = createErrorView(context);
+        } else {
+            view = createSwitcherLayout(context);
+        }
+        view.setLayoutParams(new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                ViewGroup.LayoutParams.MATCH_PARENT));
+        if (parent != null && attachToParent) {
+            parent.addView(view);
+            return parent;
+        }
+
+        return view;
+    }
+
+    /**
+     * @return true if the layout is a default library layout not overridden by the app
+     */
+    static boolean isBuiltIn(final Resources resources, final int layoutResId) {
+        if (layoutResId != R.layout.progress_view && layoutResId != R.layout.empty_view
+                && layoutResId != R.layout.error_view && layoutResId != R.layout.switcher_layout) {
+            return false;
+        }
+        synchronized (sBuiltIn) {
+            final int index = sBuiltIn.indexOfKey(layoutResId);
+            if (index >= 0) {
+                return sBuiltIn.valueAt(index);
+            }
+            final boolean builtIn = hasMarker(resources, layoutResId);
+            sBuiltIn.put(layoutResId, builtIn);
+
+            return builtIn;
+        }
+    }
+
+    private static boolean hasMarker(final Resources resources, final int layoutResId) {
+        final XmlResourceParser parser = resources.getLayout(layoutResId);
+        try {
+            int event = parser.next();
+            while (event != XmlPullParser.START_TAG && event != XmlPullParser.END_DOCUMENT) {
+                event = parser.next();
+            }
+            if (event != XmlPullParser.START_TAG) {
+                return false;
+            }
+            for (int i = 0, count = parser.getAttributeCount(); i < count; i++) {
+                if (parser.getAttributeNameResource(i) == R.attr.defaultLayout) {
+                    return parser.getAttributeBooleanValue(i, false);
+                }
+            }
+            return false;
+        } catch (Exception e) {
+            return false;
+        } finally {
+            parser.close();
+        }
+    }
+
+    private static View createSwitcherLayout(final Context context) {
+        final FrameLayout container = new SwitcherContainer(context);
+        container.setId(R.id.content_container);
+        // The same as <include> in XML: each state layout is built in code only if the app
+        // doesn't override it
+        inflateInternal(context, R.layout.progress_view, container, true);
+        inflateInternal(context, R.layout.empty_view, container, true);
+        inflateInternal(context, R.layout.error_view, container, true);
+
+        return container;
+    }
+
+    private static View createProgressView(final Context context) {
+        final LinearLayout progressView = new LinearLayout(context);
+        progressView.setId(R.id.progress_view);
+        progressView.setGravity(Gravity.CENTER);
+        progressView.setOrientation(LinearLayout.VERTICAL);
+
+        final ProgressBar progressBar = new ProgressBar(context, null,
+                android.R.attr.progressBarStyleLarge);
+        progressView.addView(progressBar, new LinearLayout.LayoutParams(
+                ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+
+        final TextView progressText = new TextView(context);
+        progressText.setId(R.id.progress_text);
+        progressText.setPadding(0, dpToPx(context, 4), 0, 0);
+        progressText.setSingleLine(true);
+        setTextAppearance(progressText, android.R.attr.textAppearanceSmall);
+        progressText.setVisibility(View.GONE);
+        progressView.addView(progressText, new LinearLayout.LayoutParams(
+                ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+
+        return progressView;
+    }
+
+    private static View createEmptyView(final Context context) {
+        final TextView emptyView = new TextView(context);
+        emptyView.setId(R.id.empty_view);
+        emptyView.setGravity(Gravity.CENTER);
+        emptyView.setText(R.string.empty);
+        setTextAppearance(emptyView, android.R.attr.textAppearanceLarge);
+
+        return emptyView;
+    }
+
+    private static View createErrorView(final Context context) {
+        final FrameLayout errorView = new FrameLayout(context);
+        errorView.setId(R.id.error_view);
+
+        final LinearLayout errorLayout = new LinearLayout(context);
+        errorLayout.setGravity(Gravity.CENTER);
+        errorLayout.setOrientation(LinearLayout.VERTICAL);
+        errorView.addView(errorLayout, new FrameLayout.LayoutParams(
+                ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT,
+                Gravity.CENTER));
+
+        final TextView errorText = new TextView(context);
+        errorText.setId(R.id.error_text);
+        errorText.setGravity(Gravity.CENTER);
+        errorText.setText(R.string.error);
+        setTextAppearance(errorText, android.R.attr.textAppearanceLarge);
+        errorLayout.addView(errorText, new LinearLayout.LayoutParams(
+                ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+
+        final Button retry = new Button(context);
+        retry.setId(R.id.retry);
+        retry.setMinWidth(dpToPx(context, 100));
+        setTextAppearance(retry, android.R.attr.textAppearanceLarge);
+        retry.setClickable(false);
+        retry.setText(R.string.retry);
+        final LinearLayout.LayoutParams retryParams = new LinearLayout.LayoutParams(
+                ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT);
+        retryParams.topMargin = dpToPx(context, 8);
+        errorLayout.addView(retry, retryParams);
+
+        return errorView;
+    }
+
+    private static void setTextAppearance(final TextView textView, final int attr) {
+        final Context context = textView.getContext();
+        final TypedValue value = new TypedValue();
+        if (context.getTheme().resolveAttribute(attr, value, true) && value.resourceId != 0) {
+            textView.setTextAppearance(context, value.resourceId);
+        }
+    }
+
+    private static int dpToPx(final Context context, final float dp) {
+        return (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, dp,
+                context.getResources().getDisplayMetrics());
+    }
+}
@@ -0,0 +1,80 @@
+package ru.vang.progressswitcher;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.view.Choreographer;
+
+/**
+ * Runs a task at the start of the next frame, at most once per frame however many times it is
+ * posted. Uses {@link Choreographer} on API 16+ and a frame-long delay of {@link SwitcherClock}
+ * before that or in {@link TestMode}. Must be used on the main thread.
+ */
+final class FrameTask {
+
+    private static final long FRAME_DELAY = 16;
+
+    private final Runnable mTask;
+
+    private boolean mPosted;
+
+    private Object mFrameCallback;
+
+    private final Runnable mRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mPosted = false;
+            mTask.run();
+        }
+    };
+
+    FrameTask(final Runnable task) {
+        mTask = task;
+    }
+
+    void post() {
+        if (mPosted) {
+            return;
+        }
+        mPosted = true;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN && !TestMode.isEnabled()) {
+            postFrameCallback();
+        } else {
+            SwitcherClock.get().postDelayed(mRunnable, FRAME_DELAY);
+        }
+    }
+
+    void cancel() {
+        if (!mPosted) {
+            return;
+        }
+        mPosted = false;
+        if (mFrameCallback != null) {
+            removeFrameCallback();
+        }
+        SwitcherClock.get().removeCallbacks(mRunnable);
+    }
+
+    boolean isPosted() {
+        return mPosted;
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void postFrameCallback() {
+        if (mFrameCallback == null) {
+            mFrameCallback = new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(final long frameTimeNanos) {
+                    mRunnable.run();
+                }
+            };
+        }
+        Choreographer.getInstance()
+                .postFrameCallback((Choreographer.FrameCallback) mFrameCallback);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void removeFrameCallback() {
+        Choreographer.getInstance()
+                .removeFrameCallback((Choreographer.FrameCallback) mFrameCallback);
+    }
+}
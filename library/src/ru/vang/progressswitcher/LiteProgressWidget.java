@@ -0,0 +1,604 @@
+package ru.vang.progressswitcher;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.os.Parcelable;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.LayoutInflater;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.animation.AnimationUtils;
+
+/**
+ * Lightweight variant of {@link ProgressWidget} for dense lists and grids. Progress, empty and
+ * error states are drawn directly on the widget canvas, so the only child view is the content.
+ * Texts and click listeners can be assigned only to the ids of default layouts: {@link
+ * ru.vang.progressswitcher.R.id#empty_view R.id.empty_view}, {@link
+ * ru.vang.progressswitcher.R.id#error_text R.id.error_text}, {@link
+ * ru.vang.progressswitcher.R.id#error_view R.id.error_view} and {@link
+ * ru.vang.progressswitcher.R.id#retry R.id.retry}. Custom animations are applied to the content
+ * view only.
+ */
+public class LiteProgressWidget extends SwitcherContainer implements Switcher {
+
+    private static final int DEFAULT_ACCENT_COLOR = 0xFF33B5E5;
+
+    private static final float DEFAULT_TEXT_SIZE_SP = 22;
+
+    private static final float RETRY_TEXT_SCALE = 0.8f;
+
+    private static final float SPINNER_SIZE_DP = 48;
+
+    private static final float SPINNER_STROKE_DP = 4;
+
+    private static final float SPINNER_SWEEP = 270;
+
+    private static final long SPINNER_PERIOD = 1000;
+
+    private static final long FRAME_DELAY = 16;
+
+    private static final float RETRY_MIN_WIDTH_DP = 100;
+
+    private static final float RETRY_PADDING_DP = 12;
+
+    private static final float RETRY_MARGIN_TOP_DP = 8;
+
+    private final TextPaint mTextPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+
+    private final TextPaint mRetryTextPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+
+    private final Paint mAccentPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+    private final RectF mSpinnerBounds = new RectF();
+
+    private final RectF mRetryBounds = new RectF();
+
+    private final float mDensity;
+
+    private View mContentView;
+
+    private int mContentTypeShown = ProgressSwitcher.TYPE_PROGRESS;
+
+    private CharSequence mEmptyText;
+
+    private CharSequence mErrorText;
+
+    private CharSequence mRetryText;
+
+    private StaticLayout mEmptyLayout;
+
+    private StaticLayout mErrorLayout;
+
+    private StaticLayout mRetryLayout;
+
+    private int mAnimationIn = ProgressSwitcher.DEFAULT_ANIMATION_IN;
+
+    private int mAnimationOut = ProgressSwitcher.DEFAULT_ANIMATION_OUT;
+
+    private OnClickListener mOnEmptyClickListener;
+
+    private OnClickListener mOnErrorClickListener;
+
+    private OnClickListener mOnRetryClickListener;
+
+    private final StateStream mStateStream = new StateStream(this);
+
+    private boolean mRetryPressed;
+
+    public LiteProgressWidget(final Context context) {
+        this(context, null);
+    }
+
+    public LiteProgressWidget(final Context context, final AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public LiteProgressWidget(final Context context, final AttributeSet attrs,
+            final int defStyle) {
+        super(context, attrs, defStyle);
+        setWillNotDraw(false);
+
+        mDensity = getResources().getDisplayMetrics().density;
+        mEmptyText = context.getText(R.string.empty);
+        mErrorText = context.getText(R.string.error);
+        mRetryText = context.getText(R.string.retry);
+
+        int textColor = resolveTextColor(context);
+        float textSize = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP,
+                DEFAULT_TEXT_SIZE_SP, getResources().getDisplayMetrics());
+        int accentColor = DEFAULT_ACCENT_COLOR;
+
+        final TypedArray typedArray = context.obtainStyledAttributes(attrs,
+                R.styleable.LiteProgressWidget, defStyle, 0);
+        if (typedArray != null) {
+            try {
+                final CharSequence emptyText = typedArray
+                        .getText(R.styleable.LiteProgressWidget_emptyText);
+                if (emptyText != null) {
+                    mEmptyText = emptyText;
+                }
+                final CharSequence errorText = typedArray
+                        .getText(R.styleable.LiteProgressWidget_errorText);
+                if (errorText != null) {
+                    mErrorText = errorText;
+                }
+                final CharSequence retryText = typedArray
+                        .getText(R.styleable.LiteProgressWidget_retryText);
+                if (retryText != null) {
+                    mRetryText = retryText;
+                }
+                textColor = typedArray.getColor(R.styleable.LiteProgressWidget_stateTextColor,
+                        textColor);
+                textSize = typedArray.getDimension(R.styleable.LiteProgressWidget_stateTextSize,
+                        textSize);
+                accentColor = typedArray.getColor(R.styleable.LiteProgressWidget_stateAccentColor,
+                        accentColor);
+                mAnimationIn = typedArray.getResourceId(
+                        R.styleable.LiteProgressWidget_animationIn, mAnimationIn);
+                mAnimationOut = typedArray.getResourceId(
+                        R.styleable.LiteProgressWidget_animationOut, mAnimationOut);
+            } finally {
+                typedArray.recycle();
+            }
+        }
+
+        mTextPaint.setColor(textColor);
+        mTextPaint.setTextSize(textSize);
+        mRetryTextPaint.setColor(textColor);
+        mRetryTextPaint.setTextSize(textSize * RETRY_TEXT_SCALE);
+        mAccentPaint.setColor(accentColor);
+        mAccentPaint.setStyle(Paint.Style.STROKE);
+        mAccentPaint.setStrokeWidth(SPINNER_STROKE_DP * mDensity);
+    }
+
+    @Override
+    protected void onFinishInflate() {
+        super.onFinishInflate();
+
+        if (getChildCount() > 1) {
+            throw new IllegalStateException(LiteProgressWidget.class.getSimpleName()
+                    + " supports only one content child");
+        }
+        if (getChildCount() == 1) {
+            mContentView = getChildAt(0);
+            mContentView.setVisibility(View.GONE);
+        }
+    }
+
+    @Override
+    protected void onVisibleToUserChanged(final boolean visible) {
+        super.onVisibleToUserChanged(visible);
+        if (visible) {
+            // Restart spinner redraw loop
+            invalidate();
+        }
+    }
+
+    @Override
+    protected void onSizeChanged(final int w, final int h, final int oldw, final int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        invalidateLayouts();
+    }
+
+    @Override
+    protected Parcelable onSaveInstanceState() {
+        final Parcelable superState = super.onSaveInstanceState();
+        final ProgressWidget.SavedState ss = new ProgressWidget.SavedState(superState);
+        ss.shownType = mContentTypeShown;
+
+        return ss;
+    }
+
+    @Override
+    public void onRestoreInstanceState(final Parcelable state) {
+        final ProgressWidget.SavedState ss = (ProgressWidget.SavedState) state;
+        super.onRestoreInstanceState(ss.getSuperState());
+
+        setContentShown(ss.shownType, false);
+    }
+
+    @Override
+    protected void onDraw(final Canvas canvas) {
+        super.onDraw(canvas);
+
+        switch (mContentTypeShown) {
+            case ProgressSwitcher.TYPE_PROGRESS:
+                drawProgress(canvas);
+                break;
+            case ProgressSwitcher.TYPE_EMPTY:
+                final StaticLayout emptyLayout = ensureEmptyLayout();
+                drawText(canvas, emptyLayout, (getHeight() - emptyLayout.getHeight()) / 2f);
+                break;
+            case ProgressSwitcher.TYPE_ERROR:
+                drawError(canvas);
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public boolean onTouchEvent(final MotionEvent event) {
+        if (mContentTypeShown == ProgressSwitcher.TYPE_EMPTY && mOnEmptyClickListener != null) {
+            if (event.getAction() == MotionEvent.ACTION_UP) {
+                mOnEmptyClickListener.onClick(this);
+            }
+            return true;
+        }
+        if (mContentTypeShown != ProgressSwitcher.TYPE_ERROR) {
+            return super.onTouchEvent(event);
+        }
+
+        final boolean insideRetry = mRetryBounds.contains(event.getX(), event.getY());
+        switch (event.getAction()) {
+            case MotionEvent.ACTION_DOWN:
+                mRetryPressed = insideRetry && mOnRetryClickListener != null;
+                if (mRetryPressed) {
+                    invalidate();
+                }
+                return mRetryPressed || mOnErrorClickListener != null;
+            case MotionEvent.ACTION_MOVE:
+                if (mRetryPressed && !insideRetry) {
+                    mRetryPressed = false;
+                    invalidate();
+                }
+                return true;
+            case MotionEvent.ACTION_UP:
+                if (mRetryPressed) {
+                    mRetryPressed = false;
+                    invalidate();
+                    mOnRetryClickListener.onClick(this);
+                } else if (mOnErrorClickListener != null) {
+                    mOnErrorClickListener.onClick(this);
+                }
+                return true;
+            case MotionEvent.ACTION_CANCEL:
+                if (mRetryPressed) {
+                    mRetryPressed = false;
+                    invalidate();
+                }
+                return true;
+            default:
+                return true;
+        }
+    }
+
+    @Override
+    public View getContentView() {
+        return mContentView;
+    }
+
+    @Override
+    public void addContentView(final int layoutResId) {
+        final View contentView = LayoutInflater.from(getContext())
+                .inflate(layoutResId, this, false);
+        addContentView(contentView);
+    }
+
+    @Override
+    public void addContentView(final View view) {
+        if (view == null) {
+            throw new IllegalArgumentException("Content view can't be null");
+        }
+        if (mContentView != null) {
+            removeView(mContentView);
+        }
+        mContentView = view;
+        view.setVisibility(mContentTypeShown == ProgressSwitcher.TYPE_CONTENT
+                ? View.VISIBLE : View.GONE);
+        addView(view);
+    }
+
+    @Override
+    public void setContentView(final int contentViewId) {
+        throw new UnsupportedOperationException("Content view must be set through xml");
+    }
+
+    @Override
+    public void setContentView(final View contentView) {
+        throw new UnsupportedOperationException("Content view must be set through xml");
+    }
+
+    @Override
+    public void showContent() {
+        showContent(true);
+    }
+
+    @Override
+    public void showContent(final boolean animate) {
+        if (mContentView == null) {
+            throw new IllegalStateException("Content view should be initialized");
+        }
+        setContentShown(ProgressSwitcher.TYPE_CONTENT, animate);
+    }
+
+    @Override
+    public void showProgress() {
+        showProgress(true);
+    }
+
+    @Override
+    public void showProgress(final boolean animate) {
+        setContentShown(ProgressSwitcher.TYPE_PROGRESS, animate);
+    }
+
+    @Override
+    public void showEmpty() {
+        showEmpty(true);
+    }
+
+    @Override
+    public void showEmpty(final boolean animate) {
+        setContentShown(ProgressSwitcher.TYPE_EMPTY, animate);
+    }
+
+    @Override
+    public void showError() {
+        showError(true);
+    }
+
+    @Override
+    public void showError(final boolean animate) {
+        setContentShown(ProgressSwitcher.TYPE_ERROR, animate);
+    }
+
+    @Override
+    public void setEmptyText(final int resId) {
+        setEmptyText(getContext().getText(resId));
+    }
+
+    @Override
+    public void setEmptyText(final CharSequence text) {
+        mEmptyText = text;
+        invalidateLayouts();
+    }
+
+    @Override
+    public void setEmptyText(final int resId, final int viewId) {
+        setEmptyText(getContext().getText(resId), viewId);
+    }
+
+    @Override
+    public void setEmptyText(final CharSequence text, final int viewId) {
+        checkViewId(viewId, R.id.empty_view);
+        setEmptyText(text);
+    }
+
+    @Override
+    public void setErrorText(final int resId) {
+        setErrorText(getContext().getText(resId));
+    }
+
+    @Override
+    public void setErrorText(final CharSequence text) {
+        mErrorText = text;
+        invalidateLayouts();
+    }
+
+    @Override
+    public void setErrorText(final int resId, final int viewId) {
+        setErrorText(getContext().getText(resId), viewId);
+    }
+
+    @Override
+    public void setErrorText(final CharSequence text, final int viewId) {
+        if (viewId == R.id.retry) {
+            mRetryText = text;
+            invalidateLayouts();
+            return;
+        }
+        checkViewId(viewId, R.id.error_text);
+        setErrorText(text);
+    }
+
+    @Override
+    public void setOnEmptyViewClickListener(final OnClickListener onClickListener) {
+        mOnEmptyClickListener = onClickListener;
+    }
+
+    @Override
+    public void setOnEmptyViewClickListener(final OnClickListener onClickListener,
+            final int viewId) {
+        checkViewId(viewId, R.id.empty_view);
+        setOnEmptyViewClickListener(onClickListener);
+    }
+
+    @Override
+    public void setOnErrorViewClickListener(final OnClickListener onClickListener) {
+        mOnErrorClickListener = onClickListener;
+    }
+
+    @Override
+    public void setOnErrorViewClickListener(final OnClickListener onClickListener,
+            final int viewId) {
+        if (viewId == R.id.retry) {
+            mOnRetryClickListener = onClickListener;
+            return;
+        }
+        checkViewId(viewId, R.id.error_view);
+        setOnErrorViewClickListener(onClickListener);
+    }
+
+    @Override
+    public boolean isProgressDisplayed() {
+        return mContentTypeShown == ProgressSwitcher.TYPE_PROGRESS;
+    }
+
+    @Override
+    public boolean isContentDisplayed() {
+        return mContentTypeShown == ProgressSwitcher.TYPE_CONTENT;
+    }
+
+    @Override
+    public boolean isEmptyViewDisplayed() {
+        return mContentTypeShown == ProgressSwitcher.TYPE_EMPTY;
+    }
+
+    @Override
+    public boolean isErrorViewDisplayed() {
+        return mContentTypeShown == ProgressSwitcher.TYPE_ERROR;
+    }
+
+    @Override
+    public void setCustomAnimation(final int animationIn, final int animationOut) {
+        mAnimationIn = animationIn;
+        mAnimationOut = animationOut;
+    }
+
+    /**
+     * Subscribe to state changes. Subscriptions and posted states are kept while the widget is
+     * detached from window, e.g. as a recycled grid cell, like those of {@link ProgressWidget}.
+     *
+     * @see Switcher#subscribe(OnStateChangeListener)
+     */
+    @Override
+    public StateSubscription subscribe(final OnStateChangeListener listener) {
+        return mStateStream.subscribe(listener);
+    }
+
+    @Override
+    public void postState(final int type) {
+        mStateStream.post(type);
+    }
+
+    void setContentShown(final int type, final boolean animate) {
+        if (type < ProgressSwitcher.TYPE_PROGRESS || type > ProgressSwitcher.TYPE_ERROR) {
+            throw new IllegalArgumentException("Unknown view type: " + type);
+        }
+        if (mContentTypeShown == type) {
+            return;
+        }
+        final boolean animated = TestMode.shouldAnimate(animate);
+        if (mContentView != null) {
+            if (type == ProgressSwitcher.TYPE_CONTENT) {
+                if (animated) {
+                    mContentView.startAnimation(AnimationUtils.loadAnimation(getContext(),
+                            mAnimationIn));
+                }
+                mContentView.setVisibility(View.VISIBLE);
+            } else if (mContentTypeShown == ProgressSwitcher.TYPE_CONTENT) {
+                if (animated) {
+                    mContentView.startAnimation(AnimationUtils.loadAnimation(getContext(),
+                            mAnimationOut));
+                } else {
+                    mContentView.clearAnimation();
+                }
+                mContentView.setVisibility(View.GONE);
+            }
+        }
+        mRetryPressed = false;
+        mContentTypeShown = type;
+        invalidate();
+        mStateStream.publish(type);
+    }
+
+    private void drawProgress(final Canvas canvas) {
+        final float size = SPINNER_SIZE_DP * mDensity;
+        final float left = (getWidth() - size) / 2;
+        final float top = (getHeight() - size) / 2;
+        mSpinnerBounds.set(left, top, left + size, top + size);
+        final float inset = mAccentPaint.getStrokeWidth() / 2;
+        mSpinnerBounds.inset(inset, inset);
+
+        final long time = SwitcherClock.get().uptimeMillis() % SPINNER_PERIOD;
+        final float startAngle = 360f * time / SPINNER_PERIOD;
+        canvas.drawArc(mSpinnerBounds, startAngle, SPINNER_SWEEP, false, mAccentPaint);
+
+        // Spinner is redrawn on demand in test mode, so it doesn't keep the main thread busy
+        if (isVisibleToUser() && !TestMode.isEnabled()) {
+            postInvalidateDelayed(FRAME_DELAY, (int) mSpinnerBounds.left - 1,
+                    (int) mSpinnerBounds.top - 1, (int) mSpinnerBounds.right + 1,
+                    (int) mSpinnerBounds.bottom + 1);
+        }
+    }
+
+    private void drawError(final Canvas canvas) {
+        final StaticLayout errorLayout = ensureErrorLayout();
+        final float padding = RETRY_PADDING_DP * mDensity;
+        final float retryWidth = Math.max(RETRY_MIN_WIDTH_DP * mDensity,
+                mRetryLayout.getWidth() + 2 * padding);
+        final float retryHeight = mRetryLayout.getHeight() + padding;
+        final float marginTop = RETRY_MARGIN_TOP_DP * mDensity;
+        final float totalHeight = errorLayout.getHeight() + marginTop + retryHeight;
+
+        final float top = (getHeight() - totalHeight) / 2;
+        drawText(canvas, errorLayout, top);
+
+        final float retryLeft = (getWidth() - retryWidth) / 2;
+        final float retryTop = top + errorLayout.getHeight() + marginTop;
+        mRetryBounds.set(retryLeft, retryTop, retryLeft + retryWidth, retryTop + retryHeight);
+        mAccentPaint.setStyle(mRetryPressed ? Paint.Style.FILL_AND_STROKE : Paint.Style.STROKE);
+        final float radius = 2 * mDensity;
+        canvas.drawRoundRect(mRetryBounds, radius, radius, mAccentPaint);
+        mAccentPaint.setStyle(Paint.Style.STROKE);
+
+        canvas.save();
+        canvas.translate(mRetryBounds.centerX() - mRetryLayout.getWidth() / 2f,
+                retryTop + padding / 2);
+        mRetryLayout.draw(canvas);
+        canvas.restore();
+    }
+
+    private void drawText(final Canvas canvas, final StaticLayout layout, final float top) {
+        canvas.save();
+        canvas.translate((getWidth() - layout.getWidth()) / 2f, top);
+        layout.draw(canvas);
+        canvas.restore();
+    }
+
+    private StaticLayout ensureEmptyLayout() {
+        if (mEmptyLayout == null) {
+            mEmptyLayout = createLayout(mEmptyText, mTextPaint);
+        }
+        return mEmptyLayout;
+    }
+
+    private StaticLayout ensureErrorLayout() {
+        if (mErrorLayout == null) {
+            mErrorLayout = createLayout(mErrorText, mTextPaint);
+        }
+        if (mRetryLayout == null) {
+            mRetryLayout = createLayout(mRetryText, mRetryTextPaint);
+        }
+        return mErrorLayout;
+    }
+
+    private StaticLayout createLayout(final CharSequence text, final TextPaint paint) {
+        final CharSequence source = text == null ? "" : text;
+        final int availableWidth = Math.max(0, getWidth() - getPaddingLeft() - getPaddingRight());
+        final int width = Math.min(availableWidth,
+                (int) Math.ceil(Layout.getDesiredWidth(source, paint)));
+        return new StaticLayout(source, paint, width, Layout.Alignment.ALIGN_CENTER, 1f, 0f,
+                false);
+    }
+
+    private void invalidateLayouts() {
+        mEmptyLayout = mErrorLayout = mRetryLayout = null;
+        invalidate();
+    }
+
+    private static int resolveTextColor(final Context context) {
+        final TypedArray typedArray = context
+                .obtainStyledAttributes(new int[]{android.R.attr.textColorPrimary});
+        try {
+            return typedArray.getColor(0, 0xFF000000);
+        } finally {
+            typedArray.recycle();
+        }
+    }
+
+    private static void checkViewId(final int viewId, final int supportedViewId) {
+        if (viewId != supportedViewId) {
+            throw new UnsupportedOperationException("View with id "
+                    + Integer.toHexString(viewId) + " isn't supported by "
+                    + LiteProgressWidget.class.getSimpleName());
+        }
+    }
+}
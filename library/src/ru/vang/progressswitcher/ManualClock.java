@@ -0,0 +1,116 @@
+package ru.vang.progressswitcher;
+
+import java.util.Iterator;
+import java.util.PriorityQueue;
+
+/**
+ * Clock which time is moved forward only by {@link #advanceBy(long)}. Posted callbacks are run
+ * synchronously on the thread which advances the clock, as soon as their time comes.
+ *
+ * @see TestMode#enable(ManualClock)
+ */
+public class ManualClock extends SwitcherClock {
+
+    private final PriorityQueue<Task> mTasks = new PriorityQueue<Task>();
+
+    private long mTime;
+
+    private long mSequence;
+
+    public ManualClock() {
+        this(0);
+    }
+
+    public ManualClock(final long startTime) {
+        mTime = startTime;
+    }
+
+    @Override
+    public synchronized long uptimeMillis() {
+        return mTime;
+    }
+
+    @Override
+    public synchronized void postDelayed(final Runnable runnable, final long delayMillis) {
+        if (runnable == null) {
+            throw new NullPointerException("Runnable can't be null");
+        }
+        mTasks.add(new Task(runnable, mTime + Math.max(0, delayMillis), mSequence++));
+    }
+
+    @Override
+    public synchronized void removeCallbacks(final Runnable runnable) {
+        for (final Iterator<Task> it = mTasks.iterator(); it.hasNext(); ) {
+            if (it.next().runnable == runnable) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Move time forward and run all callbacks which become due, in order of their time.
+     *
+     * @param millis time to advance by, can't be negative
+     */
+    public void advanceBy(final long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Time can't go backwards");
+        }
+        final long targetTime;
+        synchronized (this) {
+            targetTime = mTime + millis;
+        }
+        while (true) {
+            final Task task;
+            synchronized (this) {
+                final Task next = mTasks.peek();
+                if (next == null || next.time > targetTime) {
+                    mTime = targetTime;
+                    return;
+                }
+                task = mTasks.poll();
+                mTime = task.time;
+            }
+            task.runnable.run();
+        }
+    }
+
+    /**
+     * Run callbacks which are already due without moving time forward.
+     */
+    public void runPending() {
+        advanceBy(0);
+    }
+
+    /**
+     * Returns number of callbacks waiting to be run.
+     *
+     * @return number of pending callbacks
+     */
+    public synchronized int getPendingCount() {
+        return mTasks.size();
+    }
+
+    private static final class Task implements Comparable<Task> {
+
+        final Runnable runnable;
+
+        final long time;
+
+        final long sequence;
+
+        Task(final Runnable runnable, final long time, final long sequence) {
+            this.runnable = runnable;
+            this.time = time;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(final Task another) {
+            if (time != another.time) {
+                return time < another.time ? -1 : 1;
+            }
+            return sequence < another.sequence ? -1 : (sequence == another.sequence ? 0 : 1);
+        }
+    }
+}
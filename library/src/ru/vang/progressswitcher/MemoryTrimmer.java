@@ -0,0 +1,237 @@
+package ru.vang.progressswitcher;
+
+import android.annotation.TargetApi;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Releases inactive state views of registered switchers when the system is low on memory.
+ * Released views are detached together with their drawables and inflated again on next use.
+ * On API 14+ the trimmer registers for memory callbacks itself; on older versions {@link
+ * #onLowMemory()} should be called from {@link android.app.Application#onLowMemory()}. Must be
+ * used from the main thread.
+ *
+ * @see ProgressSwitcher#setReleaseStateViewsOnTrim(boolean)
+ */
+public final class MemoryTrimmer {
+
+    /**
+     * Interface definition for a callback to be invoked when state views were released.
+     */
+    public interface OnTrimListener {
+
+        /**
+         * Called after inactive state views were released.
+         *
+         * @param level          trim level or {@link #LEVEL_LOW_MEMORY}
+         * @param releasedViews  number of released state views
+         * @param reclaimedBytes estimated size of released bitmaps in bytes
+         */
+        public void onTrimmed(int level, int releasedViews, long reclaimedBytes);
+    }
+
+    /**
+     * Level reported for {@link #onLowMemory()}.
+     */
+    public static final int LEVEL_LOW_MEMORY = ComponentCallbacks2.TRIM_MEMORY_COMPLETE;
+
+    private static final List<WeakReference<ProgressSwitcher>> sSwitchers
+            = new ArrayList<WeakReference<ProgressSwitcher>>();
+
+    private static int sTrimLevel = ComponentCallbacks2.TRIM_MEMORY_BACKGROUND;
+
+    private static boolean sRegistered;
+
+    private static OnTrimListener sOnTrimListener;
+
+    private static long sReclaimedBytes;
+
+    private static int sReleasedViews;
+
+    private MemoryTrimmer() {
+    }
+
+    /**
+     * Set the lowest trim level at which state views are released. Default is {@link
+     * ComponentCallbacks2#TRIM_MEMORY_BACKGROUND}.
+     *
+     * @param level one of {@link ComponentCallbacks2} trim levels
+     */
+    public static void setTrimLevel(final int level) {
+        sTrimLevel = level;
+    }
+
+    public static void setOnTrimListener(final OnTrimListener onTrimListener) {
+        sOnTrimListener = onTrimListener;
+    }
+
+    /**
+     * Returns estimated size of bitmaps released since the process start.
+     *
+     * @return size in bytes
+     */
+    public static long getReclaimedBytes() {
+        return sReclaimedBytes;
+    }
+
+    /**
+     * Returns number of state views released since the process start.
+     *
+     * @return number of views
+     */
+    public static int getReleasedViewCount() {
+        return sReleasedViews;
+    }
+
+    /**
+     * Release inactive state views if the level is not lower than the configured one.
+     *
+     * @param level trim level
+     * @return estimated size of released bitmaps in bytes
+     */
+    public static long onTrimMemory(final int level) {
+        if (level < sTrimLevel) {
+            return 0;
+        }
+        return trim(level);
+    }
+
+    /**
+     * Release inactive state views regardless of the configured level.
+     *
+     * @return estimated size of released bitmaps in bytes
+     */
+    public static long onLowMemory() {
+        return trim(LEVEL_LOW_MEMORY);
+    }
+
+    static void register(final Context context, final ProgressSwitcher switcher) {
+        for (final WeakReference<ProgressSwitcher> reference : sSwitchers) {
+            if (reference.get() == switcher) {
+                return;
+            }
+        }
+        sSwitchers.add(new WeakReference<ProgressSwitcher>(switcher));
+        if (!sRegistered && Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+            TrimCallbacks.register(context);
+            sRegistered = true;
+        }
+    }
+
+    static void unregister(final ProgressSwitcher switcher) {
+        for (final Iterator<WeakReference<ProgressSwitcher>> it = sSwitchers.iterator();
+                it.hasNext(); ) {
+            final ProgressSwitcher registered = it.next().get();
+            if (registered == null || registered == switcher) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Estimate size of bitmaps referenced by the view hierarchy and detach all drawables from
+     * it.
+     *
+     * @param view root of the hierarchy
+     * @return estimated size in bytes
+     */
+    static long releaseDrawables(final View view) {
+        return releaseDrawables(view, new IdentityHashMap<Bitmap, Boolean>());
+    }
+
+    private static long trim(final int level) {
+        long bytes = 0;
+        int views = 0;
+        for (final Iterator<WeakReference<ProgressSwitcher>> it = sSwitchers.iterator();
+                it.hasNext(); ) {
+            final ProgressSwitcher switcher = it.next().get();
+            if (switcher == null) {
+                it.remove();
+                continue;
+            }
+            final int released = switcher.getReleasedStateViewCount();
+            bytes += switcher.releaseStateViews();
+            views += switcher.getReleasedStateViewCount() - released;
+        }
+        sReclaimedBytes += bytes;
+        sReleasedViews += views;
+        if (sOnTrimListener != null && views > 0) {
+            sOnTrimListener.onTrimmed(level, views, bytes);
+        }
+
+        return bytes;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static long releaseDrawables(final View view,
+            final IdentityHashMap<Bitmap, Boolean> counted) {
+        long bytes = releaseDrawable(view.getBackground(), counted);
+        view.setBackgroundDrawable(null);
+        if (view instanceof ImageView) {
+            final ImageView imageView = (ImageView) view;
+            bytes += releaseDrawable(imageView.getDrawable(), counted);
+            imageView.setImageDrawable(null);
+        }
+        if (view instanceof ViewGroup) {
+            final ViewGroup group = (ViewGroup) view;
+            for (int i = 0, count = group.getChildCount(); i < count; i++) {
+                bytes += releaseDrawables(group.getChildAt(i), counted);
+            }
+        }
+
+        return bytes;
+    }
+
+    private static long releaseDrawable(final Drawable drawable,
+            final IdentityHashMap<Bitmap, Boolean> counted) {
+        if (drawable == null) {
+            return 0;
+        }
+        drawable.setCallback(null);
+        if (!(drawable instanceof BitmapDrawable)) {
+            return 0;
+        }
+        final Bitmap bitmap = ((BitmapDrawable) drawable).getBitmap();
+        if (bitmap == null || counted.put(bitmap, Boolean.TRUE) != null) {
+            return 0;
+        }
+
+        return (long) bitmap.getRowBytes() * bitmap.getHeight();
+    }
+
+    @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+    private static final class TrimCallbacks implements ComponentCallbacks2 {
+
+        static void register(final Context context) {
+            context.getApplicationContext().registerComponentCallbacks(new TrimCallbacks());
+        }
+
+        @Override
+        public void onTrimMemory(final int level) {
+            MemoryTrimmer.onTrimMemory(level);
+        }
+
+        @Override
+        public void onLowMemory() {
+            MemoryTrimmer.onLowMemory();
+        }
+
+        @Override
+        public void onConfigurationChanged(final Configuration newConfig) {
+        }
+    }
+}
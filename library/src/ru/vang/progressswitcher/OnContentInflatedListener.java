@@ -0,0 +1,21 @@
+package ru.vang.progressswitcher;
+
+import android.view.View;
+
+/**
+ * Interface definition for a callback to be invoked when content layout was inflated
+ * asynchronously.
+ *
+ * @see ProgressSwitcher#addContentViewAsync(int, OnContentInflatedListener)
+ */
+public interface OnContentInflatedListener {
+
+    /**
+     * Called on the main thread. The view isn't added to the switcher, so it can be set up and
+     * added by {@link Switcher#addContentView(View)}.
+     *
+     * @param view root of the inflated layout
+     */
+    public void onContentInflated(View view);
+
+}
@@ -0,0 +1,21 @@
+package ru.vang.progressswitcher;
+
+/**
+ * Interface definition for a callback to be invoked when the state displayed by a {@link
+ * Switcher} is changed.
+ *
+ * @see Switcher#subscribe(OnStateChangeListener)
+ */
+public interface OnStateChangeListener {
+
+    /**
+     * Called on the main thread after the state change was committed. If several changes were
+     * committed before the listener was called, only the latest one is delivered.
+     *
+     * @param type one of {@link ProgressSwitcher#TYPE_PROGRESS}, {@link
+     *             ProgressSwitcher#TYPE_CONTENT}, {@link ProgressSwitcher#TYPE_EMPTY} or {@link
+     *             ProgressSwitcher#TYPE_ERROR}
+     */
+    public void onStateChanged(int type);
+
+}
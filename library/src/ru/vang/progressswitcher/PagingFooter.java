@@ -0,0 +1,235 @@
+package ru.vang.progressswitcher;
+
+import android.content.Context;
+import android.view.View;
+import android.view.View.OnClickListener;
+import android.widget.AbsListView;
+import android.widget.ListView;
+
+/**
+ * Footer for lists which load their data page by page. The footer displays progress while the
+ * next page is loading and error view with retry on failure, while the list itself stays in
+ * content state. Loading of the next page is requested when the user scrolls within {@link
+ * #setPrefetchDistance(int) prefetch distance} of the end of the list.
+ * <p/>
+ * Footer is built on {@link ProgressSwitcher}, so custom layouts should have the same ids as
+ * default {@link ru.vang.progressswitcher.R.layout#progress_view progress_view} and {@link
+ * ru.vang.progressswitcher.R.layout#error_view error_view} layouts.
+ */
+public class PagingFooter implements AbsListView.OnScrollListener {
+
+    public static final int DEFAULT_PREFETCH_DISTANCE = 5;
+
+    /**
+     * Interface definition for a callback to be invoked when the next page should be loaded.
+     */
+    public interface OnLoadMoreListener {
+
+        /**
+         * Called when the next page should be loaded. Result must be reported with {@link
+         * #onPageLoaded(boolean)} or {@link #onPageFailed()}.
+         *
+         * @param footer footer which requested the page
+         */
+        public void onLoadMore(PagingFooter footer);
+    }
+
+    private final ProgressSwitcher mProgressSwitcher;
+
+    private final View mFooterView;
+
+    private ListView mListView;
+
+    private OnLoadMoreListener mOnLoadMoreListener;
+
+    private AbsListView.OnScrollListener mOnScrollListener;
+
+    private int mPrefetchDistance = DEFAULT_PREFETCH_DISTANCE;
+
+    private boolean mLoading;
+
+    private boolean mFailed;
+
+    private boolean mHasMore = true;
+
+    public PagingFooter(final Context context) {
+        this(context, ProgressSwitcher.getDefaultProgressView(),
+                ProgressSwitcher.getDefaultErrorView());
+    }
+
+    public PagingFooter(final Context context, final int progressViewResId,
+            final int errorViewResId) {
+        final View idleView = new View(context);
+        idleView.setId(R.id.content_view);
+
+        mProgressSwitcher = new ProgressSwitcher.Builder(context)
+                .setContentView(idleView)
+                .setProgressView(progressViewResId)
+                .setErrorView(errorViewResId)
+                .build();
+        mProgressSwitcher.setOnErrorViewClickListener(new OnClickListener() {
+            @Override
+            public void onClick(final View v) {
+                retry();
+            }
+        });
+        showIdle();
+        mFooterView = mProgressSwitcher.getContentContainer();
+    }
+
+    /**
+     * Add footer to the list and start tracking its scroll. Before API 19 footer must be
+     * attached before adapter is set to the list.
+     *
+     * @param listView list to attach to
+     */
+    public void attach(final ListView listView) {
+        if (listView == null) {
+            throw new NullPointerException("List view can't be null");
+        }
+        if (mListView != null) {
+            throw new IllegalStateException("Footer is already attached");
+        }
+        mListView = listView;
+        listView.addFooterView(mFooterView, null, false);
+        listView.setOnScrollListener(this);
+    }
+
+    public void detach() {
+        if (mListView == null) {
+            return;
+        }
+        mListView.removeFooterView(mFooterView);
+        mListView.setOnScrollListener(mOnScrollListener);
+        mListView = null;
+    }
+
+    /**
+     * Set the number of items from the end of the list at which the next page is requested.
+     *
+     * @param prefetchDistance distance in items, can't be negative
+     */
+    public void setPrefetchDistance(final int prefetchDistance) {
+        if (prefetchDistance < 0) {
+            throw new IllegalArgumentException("Prefetch distance can't be negative");
+        }
+        mPrefetchDistance = prefetchDistance;
+    }
+
+    public void setOnLoadMoreListener(final OnLoadMoreListener onLoadMoreListener) {
+        mOnLoadMoreListener = onLoadMoreListener;
+    }
+
+    /**
+     * List supports only one scroll listener, so the listener should be set here to receive
+     * scroll events while the footer is attached.
+     *
+     * @param onScrollListener scroll listener
+     */
+    public void setOnScrollListener(final AbsListView.OnScrollListener onScrollListener) {
+        mOnScrollListener = onScrollListener;
+    }
+
+    public void setErrorText(final int resId) {
+        mProgressSwitcher.setErrorText(resId);
+    }
+
+    public void setErrorText(final CharSequence text) {
+        mProgressSwitcher.setErrorText(text);
+    }
+
+    /**
+     * Report that the page was appended to the adapter.
+     *
+     * @param hasMore true if more pages are available
+     */
+    public void onPageLoaded(final boolean hasMore) {
+        mLoading = false;
+        mFailed = false;
+        mHasMore = hasMore;
+        showIdle();
+    }
+
+    /**
+     * Report that the page couldn't be loaded. Error view with retry is displayed in the footer.
+     */
+    public void onPageFailed() {
+        mLoading = false;
+        mFailed = true;
+        mProgressSwitcher.showError(false);
+    }
+
+    /**
+     * Request the next page again after failure.
+     */
+    public void retry() {
+        mFailed = false;
+        mHasMore = true;
+        loadMore();
+    }
+
+    /**
+     * Reset footer to its initial state, e.g. when the list is refreshed from the first page.
+     */
+    public void reset() {
+        mLoading = false;
+        mFailed = false;
+        mHasMore = true;
+        showIdle();
+    }
+
+    public boolean isLoading() {
+        return mLoading;
+    }
+
+    public boolean hasMore() {
+        return mHasMore;
+    }
+
+    public View getFooterView() {
+        return mFooterView;
+    }
+
+    @Override
+    public void onScrollStateChanged(final AbsListView view, final int scrollState) {
+        if (mOnScrollListener != null) {
+            mOnScrollListener.onScrollStateChanged(view, scrollState);
+        }
+    }
+
+    @Override
+    public void onScroll(final AbsListView view, final int firstVisibleItem,
+            final int visibleItemCount, final int totalItemCount) {
+        if (mOnScrollListener != null) {
+            mOnScrollListener.onScroll(view, firstVisibleItem, visibleItemCount, totalItemCount);
+        }
+        // Footer is the only item until the first page is loaded
+        if (mLoading || mFailed || !mHasMore || totalItemCount <= 1) {
+            return;
+        }
+        if (firstVisibleItem + visibleItemCount >= totalItemCount - mPrefetchDistance) {
+            loadMore();
+        }
+    }
+
+    private void loadMore() {
+        if (mLoading) {
+            return;
+        }
+        mLoading = true;
+        mProgressSwitcher.showProgress(false);
+        if (mOnLoadMoreListener != null) {
+            mOnLoadMoreListener.onLoadMore(this);
+        }
+    }
+
+    /**
+     * Hide progress and error. Checks the displayed state first, so the footer doesn't cause
+     * redundant transitions reported by {@link SwitcherStrictMode}.
+     */
+    private void showIdle() {
+        if (mProgressSwitcher.getShownContentType() != ProgressSwitcher.TYPE_CONTENT) {
+            mProgressSwitcher.showContent(false);
+        }
+    }
+}
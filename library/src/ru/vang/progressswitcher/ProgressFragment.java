@@ -22,6 +22,10 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.View.OnClickListener;
 import android.view.ViewGroup;
+import android.widget.Adapter;
+
+import ru.vang.progressswitcher.core.StateMachine;
+import ru.vang.progressswitcher.core.TransitionRecorder;
 
 /**
  * The implementation of the fragment to display content. Based on
@@ -37,6 +41,10 @@ public class ProgressFragment extends Fragment implements Switcher {
 
     private ProgressSwitcher mProgressSwitcher;
 
+    private boolean mDefaultLayout;
+
+    private AdapterBinding mAdapterBinding;
+
     @Override
     public void onCreate(final Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -65,7 +73,9 @@ public class ProgressFragment extends Fragment implements Switcher {
     @Override
     public View onCreateView(final LayoutInflater inflater, final ViewGroup container,
             final Bundle savedInstanceState) {
-        return inflater.inflate(R.layout.switcher_layout, container, false);
+        mDefaultLayout = true;
+        return DefaultLayouts.inflate(inflater.getContext(), R.layout.switcher_layout, container,
+                false);
     }
 
     /**
@@ -75,14 +85,19 @@ public class ProgressFragment extends Fragment implements Switcher {
     public void onViewCreated(final View view, final Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
         mProgressSwitcher.setRootView(view);
+        // State layouts are known only if switcher_layout includes the library ones. Views of
+        // an overridden switcher_layout aren't released by MemoryTrimmer.
+        if (mDefaultLayout && DefaultLayouts.isBuiltIn(getResources(), R.layout.switcher_layout)) {
+            mProgressSwitcher.setStateViewLayouts(R.layout.progress_view, R.layout.empty_view,
+                    R.layout.error_view);
+        }
     }
 
     public void onViewStateRestored(final Bundle savedInstanceState) {
         super.onViewStateRestored(savedInstanceState);
         if (savedInstanceState != null) {
-            mProgressSwitcher.setContentShown(
-                    savedInstanceState.getInt(EXTRA_SHOWN_TYPE, ProgressSwitcher.TYPE_PROGRESS),
-                    false);
+            mProgressSwitcher.restoreContentShown(
+                    savedInstanceState.getInt(EXTRA_SHOWN_TYPE, ProgressSwitcher.TYPE_PROGRESS));
         }
     }
 
@@ -91,6 +106,10 @@ public class ProgressFragment extends Fragment implements Switcher {
      */
     @Override
     public void onDestroyView() {
+        if (mAdapterBinding != null) {
+            mAdapterBinding.unbind();
+            mAdapterBinding = null;
+        }
         mProgressSwitcher.reset();
         super.onDestroyView();
     }
@@ -116,6 +135,19 @@ public class ProgressFragment extends Fragment implements Switcher {
         mProgressSwitcher.addContentView(view);
     }
 
+    public void addContentViewAsync(final int layoutResId) {
+        mProgressSwitcher.addContentViewAsync(layoutResId);
+    }
+
+    public void addContentViewAsync(final int layoutResId,
+            final OnContentInflatedListener listener) {
+        mProgressSwitcher.addContentViewAsync(layoutResId, listener);
+    }
+
+    public void setContentFactory(final ContentFactory contentFactory) {
+        mProgressSwitcher.setContentFactory(contentFactory);
+    }
+
     @Override
     public void setContentView(final int contentViewId) {
         mProgressSwitcher.setContentView(contentViewId);
@@ -206,6 +238,17 @@ public class ProgressFragment extends Fragment implements Switcher {
         mProgressSwitcher.setErrorText(text, viewId);
     }
 
+    /**
+     * Display skeleton placeholder generated from the content view instead of progress view.
+     * Should be called after the view hierarchy has been created.
+     *
+     * @param skeleton skeleton drawable or null to use progress view again
+     * @see ProgressSwitcher#setProgressSkeleton(SkeletonDrawable)
+     */
+    public void setProgressSkeleton(final SkeletonDrawable skeleton) {
+        mProgressSwitcher.setProgressSkeleton(skeleton);
+    }
+
     @Override
     public void setOnEmptyViewClickListener(final OnClickListener onClickListener) {
         mProgressSwitcher.setOnEmptyViewClickListener(onClickListener);
@@ -252,4 +295,105 @@ public class ProgressFragment extends Fragment implements Switcher {
     public void setCustomAnimation(final int animationIn, final int animationOut) {
         mProgressSwitcher.setCustomAnimation(animationIn, animationOut);
     }
+
+    /**
+     * @see ProgressSwitcher#setTransitionEngine(TransitionEngine)
+     */
+    public void setTransitionEngine(final TransitionEngine transitionEngine) {
+        mProgressSwitcher.setTransitionEngine(transitionEngine);
+    }
+
+    @Override
+    public StateSubscription subscribe(final OnStateChangeListener listener) {
+        return mProgressSwitcher.subscribe(listener);
+    }
+
+    @Override
+    public void postState(final int type) {
+        mProgressSwitcher.postState(type);
+    }
+
+    public long newLoadToken() {
+        return mProgressSwitcher.newLoadToken();
+    }
+
+    public boolean isCurrentLoadToken(final long loadToken) {
+        return mProgressSwitcher.isCurrentLoadToken(loadToken);
+    }
+
+    public boolean postState(final int type, final long loadToken) {
+        return mProgressSwitcher.postState(type, loadToken);
+    }
+
+    /**
+     * Switch between empty and content states following the data of the adapter, like {@link
+     * android.app.ListFragment} does for its list. Previously bound adapter is unbound. Binding
+     * is dropped when the view is destroyed.
+     *
+     * @param adapter adapter to observe, or null to unbind
+     * @return binding, or null if adapter is null
+     * @see AdapterBinding
+     */
+    public AdapterBinding bindAdapter(final Adapter adapter) {
+        if (mAdapterBinding != null) {
+            mAdapterBinding.unbind();
+            mAdapterBinding = null;
+        }
+        if (adapter != null) {
+            mAdapterBinding = new AdapterBinding(this, adapter);
+        }
+        return mAdapterBinding;
+    }
+
+    public void setReleaseStateViewsOnTrim(final boolean release) {
+        mProgressSwitcher.setReleaseStateViewsOnTrim(release);
+    }
+
+    public void setRevealScheduler(final RevealScheduler revealScheduler) {
+        mProgressSwitcher.setRevealScheduler(revealScheduler);
+    }
+
+    public void setLayoutBoundary(final boolean layoutBoundary) {
+        mProgressSwitcher.setLayoutBoundary(layoutBoundary);
+    }
+
+    public void setSnapshotCache(final SnapshotCache snapshotCache, final String key) {
+        mProgressSwitcher.setSnapshotCache(snapshotCache, key);
+    }
+
+    public boolean saveSnapshot() {
+        return mProgressSwitcher.saveSnapshot();
+    }
+
+    public void setProgressTimeout(final long timeoutMs) {
+        mProgressSwitcher.setProgressTimeout(timeoutMs);
+    }
+
+    public void setProgressTimeout(final long timeoutMs, final int fallbackType) {
+        mProgressSwitcher.setProgressTimeout(timeoutMs, fallbackType);
+    }
+
+    public void setProgressDelay(final long delayMs) {
+        mProgressSwitcher.setProgressDelay(delayMs);
+    }
+
+    public void setMinProgressTime(final long minTimeMs) {
+        mProgressSwitcher.setMinProgressTime(minTimeMs);
+    }
+
+    public void addStateListener(final StateMachine.Listener listener) {
+        mProgressSwitcher.addStateListener(listener);
+    }
+
+    public void removeStateListener(final StateMachine.Listener listener) {
+        mProgressSwitcher.removeStateListener(listener);
+    }
+
+    public void setTransitionRecorder(final TransitionRecorder recorder) {
+        mProgressSwitcher.setTransitionRecorder(recorder);
+    }
+
+    ProgressSwitcher getProgressSwitcher() {
+        return mProgressSwitcher;
+    }
 }
@@ -16,24 +16,29 @@
 package ru.vang.progressswitcher;
 
 import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.View.OnClickListener;
 import android.view.ViewGroup;
-import android.view.animation.AnimationUtils;
 import android.widget.FrameLayout;
 import android.widget.TextView;
 
+import ru.vang.progressswitcher.core.StateMachine;
+import ru.vang.progressswitcher.core.TransitionRecorder;
+
 
 public class ProgressSwitcher implements Switcher {
 
-    public static final int TYPE_PROGRESS = 0;
+    public static final int TYPE_PROGRESS = StateMachine.STATE_PROGRESS;
 
-    public static final int TYPE_CONTENT = 1;
+    public static final int TYPE_CONTENT = StateMachine.STATE_CONTENT;
 
-    public static final int TYPE_EMPTY = 2;
+    public static final int TYPE_EMPTY = StateMachine.STATE_EMPTY;
 
-    public static final int TYPE_ERROR = 3;
+    public static final int TYPE_ERROR = StateMachine.STATE_ERROR;
 
     private static int sDefaultProgressView = R.layout.progress_view;
 
@@ -59,18 +64,88 @@ public class ProgressSwitcher implements Switcher {
 
     private View mShownView;
 
+    private ContentFactory mContentFactory;
+
+    private boolean mStateViewsFound;
+
     private int mContentTypeShown = TYPE_PROGRESS;
 
-    private int mAnimationIn = DEFAULT_ANIMATION_IN;
+    private final StateMachine mStateMachine = new StateMachine(new StateMachine.Renderer() {
+        @Override
+        public void render(final int state, final boolean animate) {
+            showNow(state, animate);
+        }
+    }, SwitcherClock.getCoreClock());
+
+    private TransitionEngine mTransitionEngine;
+
+    private SkeletonDrawable mSkeleton;
+
+    private Drawable mContainerBackground;
+
+    private boolean mSkeletonShown;
+
+    private SnapshotCache mSnapshotCache;
+
+    private String mSnapshotKey;
+
+    private Drawable mSnapshot;
+
+    private int mSnapshotRequest;
 
-    private int mAnimationOut = DEFAULT_ANIMATION_OUT;
+    private boolean mLayoutBoundary;
+
+    private final StateStream mStateStream = new StateStream(this);
+
+    private int mProgressViewResId;
+
+    private int mEmptyViewResId;
+
+    private int mErrorViewResId;
+
+    private int mReleasedStates;
+
+    private final StateViewBindings mEmptyBindings = new StateViewBindings();
+
+    private final StateViewBindings mErrorBindings = new StateViewBindings();
+
+    private RevealScheduler mRevealScheduler;
+
+    private long mProgressTimeoutMs;
+
+    private int mTimeoutFallbackType = TYPE_ERROR;
+
+    private final TimeoutWheel.Timeout mProgressTimeout = new TimeoutWheel.Timeout() {
+        @Override
+        void onExpired() {
+            if (mContentTypeShown != TYPE_PROGRESS || mContentContainer == null
+                    || mStateMachine.hasPendingState()) {
+                return;
+            }
+            // Content has already arrived and waits for its frame
+            if (mRevealScheduler != null && mRevealScheduler.isPending(ProgressSwitcher.this)) {
+                return;
+            }
+            // Keep progress rather than throw far from the caller if the fallback view is missing
+            if (hasStateView(mTimeoutFallbackType)) {
+                setContentShown(mTimeoutFallbackType, true);
+            }
+        }
+    };
+
+    private int mInflateRequest;
+
+    private int mShownStates;
+
+    private int mTextStates;
 
     ProgressSwitcher(final Context context) {
         mContext = context;
+        mTransitionEngine = new AnimationTransition(context);
     }
 
     private ProgressSwitcher(final Context context, final View rootView) {
-        mContext = context;
+        this(context);
         initViewsFromRoot(rootView);
     }
 
@@ -133,22 +208,25 @@ public class ProgressSwitcher implements Switcher {
         }
         parent.removeView(contentView);
 
-        final FrameLayout rootView = new FrameLayout(context);
+        final FrameLayout rootView = new SwitcherContainer(context);
         rootView.setId(R.id.content_container);
         rootView.setLayoutParams(contentView.getLayoutParams());
 
-        final LayoutInflater inflater = LayoutInflater.from(context);
-        inflater.inflate(sDefaultProgressView, rootView);
+        DefaultLayouts.inflate(context, sDefaultProgressView, rootView, true);
         if (sDefaultEmptyView > 0) {
-            inflater.inflate(sDefaultEmptyView, rootView);
+            DefaultLayouts.inflate(context, sDefaultEmptyView, rootView, true);
         }
         if (sDefaultErrorView > 0) {
-            inflater.inflate(sDefaultErrorView, rootView);
+            DefaultLayouts.inflate(context, sDefaultErrorView, rootView, true);
         }
         rootView.addView(contentView);
         parent.addView(rootView);
 
-        return new ProgressSwitcher(context, parent);
+        final ProgressSwitcher progressSwitcher = new ProgressSwitcher(context, parent);
+        progressSwitcher.setStateViewLayouts(sDefaultProgressView, sDefaultEmptyView,
+                sDefaultErrorView);
+
+        return progressSwitcher;
     }
 
     /**
@@ -181,6 +259,30 @@ public class ProgressSwitcher implements Switcher {
         sDefaultErrorView = layoutId;
     }
 
+    /**
+     * Animations started until {@link #endTransitionBatch()} will share the same start time.
+     * Must be called from the main thread.
+     */
+    static void beginTransitionBatch() {
+        AnimationTransition.beginBatch();
+    }
+
+    static void endTransitionBatch() {
+        AnimationTransition.endBatch();
+    }
+
+    static int getDefaultProgressView() {
+        return sDefaultProgressView;
+    }
+
+    static int getDefaultEmptyView() {
+        return sDefaultEmptyView;
+    }
+
+    static int getDefaultErrorView() {
+        return sDefaultErrorView;
+    }
+
     @Override
     public View getContentView() {
         return mContentView;
@@ -194,12 +296,56 @@ public class ProgressSwitcher implements Switcher {
         addContentView(contentView);
     }
 
+    /**
+     * Inflate content layout on a background thread while the current state, usually progress,
+     * stays displayed. When inflation is done, the view is added as content view and displayed
+     * in the same main thread message.
+     *
+     * @param layoutResId content layout
+     * @see #addContentViewAsync(int, OnContentInflatedListener)
+     */
+    public void addContentViewAsync(final int layoutResId) {
+        addContentViewAsync(layoutResId, null);
+    }
+
+    /**
+     * Inflate content layout on a background thread and hand the view to the listener on the
+     * main thread instead of adding it. The result is dropped if content view is added or the
+     * switcher is reset before inflation is done.
+     *
+     * @param layoutResId content layout
+     * @param listener    listener which receives inflated view, or null to add the view as
+     *                    content view and display it
+     */
+    public void addContentViewAsync(final int layoutResId,
+            final OnContentInflatedListener listener) {
+        ensureContent();
+        final int inflateRequest = ++mInflateRequest;
+        AsyncContentInflater.inflate(LayoutInflater.from(mContext), layoutResId,
+                mContentContainer, new AsyncContentInflater.Callback() {
+                    @Override
+                    public void onInflated(final View view) {
+                        if (inflateRequest != mInflateRequest || mContentContainer == null) {
+                            return;
+                        }
+                        if (listener != null) {
+                            listener.onContentInflated(view);
+                        } else {
+                            addContentView(view);
+                            setContentShown(TYPE_CONTENT, true);
+                        }
+                    }
+                });
+    }
+
     @Override
     public void addContentView(final View view) {
         ensureContent();
         if (view == null) {
             throw new IllegalArgumentException("Content view can't be null");
         }
+        // Supersede content inflated asynchronously
+        mInflateRequest++;
         if (mContentView == null) {
             mContentContainer.addView(view);
         } else {
@@ -212,6 +358,16 @@ public class ProgressSwitcher implements Switcher {
         mContentView = view;
     }
 
+    /**
+     * Create content view by the factory the first time content is displayed, if it wasn't set
+     * in another way. Progress, empty and error states can be displayed before that.
+     *
+     * @param contentFactory factory or null to require content view again
+     */
+    public void setContentFactory(final ContentFactory contentFactory) {
+        mContentFactory = contentFactory;
+    }
+
     @Override
     public void setContentView(final int contentViewId) {
         ensureContent();
@@ -245,7 +401,8 @@ public class ProgressSwitcher implements Switcher {
 
     @Override
     public void showProgress(boolean animate) {
-        if (mProgressView == null) {
+        // Progress view which was released or deferred is inflated only if no placeholder is shown
+        if (mProgressView == null && !isReleased(TYPE_PROGRESS)) {
             throw new IllegalStateException(
                     "Progress view should be specified in layout");
         }
@@ -259,7 +416,7 @@ public class ProgressSwitcher implements Switcher {
 
     @Override
     public void showContent(boolean animate) {
-        if (mContentView == null) {
+        if (mContentView == null && mContentFactory == null) {
             throw new IllegalStateException("Content view should be initialized");
         }
         setContentShown(TYPE_CONTENT, animate);
@@ -272,13 +429,10 @@ public class ProgressSwitcher implements Switcher {
 
     @Override
     public void showEmpty(boolean animate) {
+        restoreStateView(TYPE_EMPTY);
         if (mEmptyView == null) {
             throw new IllegalStateException("Empty view should be specified in layout");
         }
-        if (mContentView == null) {
-            throw new IllegalStateException("Content view must be initialized");
-        }
-
         setContentShown(TYPE_EMPTY, animate);
     }
 
@@ -289,13 +443,10 @@ public class ProgressSwitcher implements Switcher {
 
     @Override
     public void showError(boolean animate) {
+        restoreStateView(TYPE_ERROR);
         if (mErrorView == null) {
             throw new IllegalStateException("Error view should be specified in layout");
         }
-        if (mContentView == null) {
-            throw new IllegalStateException("Content view must be initialized");
-        }
-
         setContentShown(TYPE_ERROR, animate);
     }
 
@@ -306,11 +457,7 @@ public class ProgressSwitcher implements Switcher {
 
     @Override
     public void setEmptyText(final CharSequence text) {
-        ensureContent();
-        if (mEmptyView == null) {
-            throw new IllegalStateException("Empty view should be specified in layout");
-        }
-        setTextInternal(text, mEmptyView);
+        setEmptyText(text, StateViewBindings.ROOT_VIEW_ID);
     }
 
     @Override
@@ -321,11 +468,14 @@ public class ProgressSwitcher implements Switcher {
     @Override
     public void setEmptyText(final CharSequence text, final int viewId) {
         ensureContent();
-        if (mEmptyView == null) {
-            throw new IllegalStateException("Empty view should be specified in layout");
+        if (!isReleased(TYPE_EMPTY)) {
+            if (mEmptyView == null) {
+                throw new IllegalStateException("Empty view should be specified in layout");
+            }
+            setTextInternal(text, StateViewBindings.findView(mEmptyView, viewId));
         }
-        final View emptyTextView = mEmptyView.findViewById(viewId);
-        setTextInternal(text, emptyTextView);
+        mEmptyBindings.putText(viewId, text);
+        onTextSet(TYPE_EMPTY, "setEmptyText");
     }
 
     @Override
@@ -335,12 +485,7 @@ public class ProgressSwitcher implements Switcher {
 
     @Override
     public void setErrorText(final CharSequence text) {
-        ensureContent();
-        if (mErrorView == null) {
-            throw new IllegalStateException("Error view should be specified in layout");
-        }
-        final View errorTextView = mErrorView.findViewById(R.id.error_text);
-        setTextInternal(text, errorTextView);
+        setErrorText(text, R.id.error_text);
     }
 
     @Override
@@ -351,46 +496,47 @@ public class ProgressSwitcher implements Switcher {
     @Override
     public void setErrorText(final CharSequence text, final int viewId) {
         ensureContent();
-        if (mErrorView == null) {
-            throw new IllegalStateException("Error view should be specified in layout");
+        if (!isReleased(TYPE_ERROR)) {
+            if (mErrorView == null) {
+                throw new IllegalStateException("Error view should be specified in layout");
+            }
+            setTextInternal(text, mErrorView.findViewById(viewId));
         }
-        final View errorTextView = mErrorView.findViewById(viewId);
-        setTextInternal(text, errorTextView);
+        mErrorBindings.putText(viewId, text);
+        onTextSet(TYPE_ERROR, "setErrorText");
     }
 
     @Override
     public void setOnEmptyViewClickListener(final OnClickListener onClickListener) {
-        if (mEmptyView == null) {
-            throw new IllegalStateException("Empty view should be provided in layout");
-        }
-
-        mEmptyView.setOnClickListener(onClickListener);
+        setOnEmptyViewClickListener(onClickListener, StateViewBindings.ROOT_VIEW_ID);
     }
 
     @Override
     public void setOnEmptyViewClickListener(OnClickListener onClickListener, int viewId) {
-        if (mEmptyView == null) {
-            throw new IllegalStateException("Empty view should be provided in layout");
+        if (!isReleased(TYPE_EMPTY)) {
+            if (mEmptyView == null) {
+                throw new IllegalStateException("Empty view should be provided in layout");
+            }
+            setOnClickListenerToView(mEmptyView, onClickListener, viewId);
         }
-        setOnClickListenerToView(mEmptyView, onClickListener, viewId);
+        mEmptyBindings.putListener(viewId, onClickListener);
     }
 
     @Override
     public void setOnErrorViewClickListener(final OnClickListener onClickListener) {
-        if (mErrorView == null) {
-            throw new IllegalStateException("Error view should be provided in layout");
-        }
-
-        mErrorView.setOnClickListener(onClickListener);
+        setOnErrorViewClickListener(onClickListener, StateViewBindings.ROOT_VIEW_ID);
     }
 
     @Override
     public void setOnErrorViewClickListener(final OnClickListener onClickListener,
             final int viewId) {
-        if (mErrorView == null) {
-            throw new IllegalStateException("Error view should be provided in layout");
+        if (!isReleased(TYPE_ERROR)) {
+            if (mErrorView == null) {
+                throw new IllegalStateException("Error view should be provided in layout");
+            }
+            setOnClickListenerToView(mErrorView, onClickListener, viewId);
         }
-        setOnClickListenerToView(mErrorView, onClickListener, viewId);
+        mErrorBindings.putListener(viewId, onClickListener);
     }
 
     @Override
@@ -415,14 +561,315 @@ public class ProgressSwitcher implements Switcher {
 
     @Override
     public void setCustomAnimation(final int animationIn, final int animationOut) {
-        mAnimationIn = animationIn;
-        mAnimationOut = animationOut;
+        mTransitionEngine = new AnimationTransition(mContext, animationIn, animationOut);
+    }
+
+    /**
+     * Set engine which performs transitions between state views. Replaces animations set by
+     * {@link #setCustomAnimation(int, int)}.
+     *
+     * @param transitionEngine transition engine, can't be null
+     * @see PropertyAnimatorTransition
+     */
+    public void setTransitionEngine(final TransitionEngine transitionEngine) {
+        if (transitionEngine == null) {
+            throw new NullPointerException("Transition engine can't be null");
+        }
+        mTransitionEngine = transitionEngine;
+    }
+
+    /**
+     * Display error view if progress is displayed longer than the timeout.
+     *
+     * @param timeoutMs timeout in milliseconds, 0 to disable
+     * @see #setProgressTimeout(long, int)
+     */
+    public void setProgressTimeout(final long timeoutMs) {
+        setProgressTimeout(timeoutMs, TYPE_ERROR);
+    }
+
+    /**
+     * Display fallback state if progress is displayed longer than the timeout. The timer is
+     * restarted each time progress is displayed. Timeouts of all switchers are tracked by one
+     * shared timer, so they fire with precision of 100 ms. If the switcher has no view for the
+     * fallback state when the timeout fires, progress stays displayed.
+     *
+     * @param timeoutMs    timeout in milliseconds, 0 to disable
+     * @param fallbackType one of {@link #TYPE_CONTENT}, {@link #TYPE_EMPTY} or {@link
+     *                     #TYPE_ERROR}
+     */
+    public void setProgressTimeout(final long timeoutMs, final int fallbackType) {
+        if (timeoutMs < 0) {
+            throw new IllegalArgumentException("Timeout can't be negative");
+        }
+        StateStream.checkType(fallbackType);
+        if (fallbackType == TYPE_PROGRESS) {
+            throw new IllegalArgumentException("Progress can't be fallback state");
+        }
+        final boolean restart = timeoutMs != mProgressTimeoutMs || !mProgressTimeout.isScheduled();
+        mProgressTimeoutMs = timeoutMs;
+        mTimeoutFallbackType = fallbackType;
+        if (restart) {
+            updateProgressTimeout();
+        }
+    }
+
+    /**
+     * Display progress only if it is still requested after the delay, so that fast loads go
+     * straight to the result without progress flashing on screen.
+     *
+     * @param delayMs delay in milliseconds, 0 to display progress immediately
+     */
+    public void setProgressDelay(final long delayMs) {
+        mStateMachine.setProgressDelay(delayMs);
+    }
+
+    /**
+     * Keep progress displayed at least for the specified time. States requested earlier are
+     * displayed when the time is over.
+     *
+     * @param minTimeMs minimum time in milliseconds, 0 to replace progress immediately
+     */
+    public void setMinProgressTime(final long minTimeMs) {
+        mStateMachine.setMinProgressTime(minTimeMs);
+    }
+
+    /**
+     * Register callback invoked after displayed state changed. Unlike listeners of {@link
+     * #subscribe(OnStateChangeListener)} the listener is held strongly.
+     */
+    public void addStateListener(final StateMachine.Listener listener) {
+        mStateMachine.addListener(listener);
+    }
+
+    public void removeStateListener(final StateMachine.Listener listener) {
+        mStateMachine.removeListener(listener);
+    }
+
+    /**
+     * Record transitions of this switcher into the ring buffer, e.g. to attach its dump to crash
+     * reports. The recorder can be shared by many switchers, which are told apart by their
+     * identity hash codes.
+     *
+     * @param recorder recorder or null to stop recording
+     */
+    public void setTransitionRecorder(final TransitionRecorder recorder) {
+        mStateMachine.setRecorder(recorder, System.identityHashCode(this));
+    }
+
+    /**
+     * Queue content reveals in the scheduler, so that many switchers revealed at once are spread
+     * over several frames. Until the reveal is applied, the previous state stays displayed.
+     *
+     * @param revealScheduler scheduler, usually {@link RevealScheduler#getDefault()}, or null
+     *                        to reveal content immediately
+     */
+    public void setRevealScheduler(final RevealScheduler revealScheduler) {
+        if (mRevealScheduler != null && mRevealScheduler != revealScheduler
+                && mRevealScheduler.isPending(this)) {
+            mRevealScheduler.cancel(this);
+            if (revealScheduler == null) {
+                mStateMachine.request(TYPE_CONTENT, false);
+            } else {
+                revealScheduler.schedule(this, false);
+            }
+        }
+        mRevealScheduler = revealScheduler;
+    }
+
+    /**
+     * Display skeleton placeholder instead of progress view. Placeholder blocks are drawn by
+     * single drawable set as background of content container, so no views are inflated for
+     * them. If neither content view nor skeleton template is available, progress view is shown.
+     *
+     * @param skeleton skeleton drawable or null to use progress view again
+     */
+    public void setProgressSkeleton(final SkeletonDrawable skeleton) {
+        final boolean progressDisplayed = mContentContainer != null && isProgressDisplayed();
+        if (mSkeletonShown) {
+            hideSkeleton();
+        }
+        mSkeleton = skeleton;
+        if (progressDisplayed && !showSkeleton(false) && mShownView == null) {
+            restoreStateView(TYPE_PROGRESS);
+            if (mProgressView != null) {
+                showView(TYPE_PROGRESS, mProgressView, false);
+            }
+        }
+    }
+
+    /**
+     * Make content container a layout boundary, so that state changes re-measure only the
+     * container instead of the whole window. Takes effect only if the container is {@link
+     * SwitcherContainer}, which is the case for default layouts, and its size is fixed or {@code
+     * match_parent}.
+     *
+     * @param layoutBoundary true to stop layout requests of state views at the container
+     * @see SwitcherContainer#setLayoutBoundary(boolean)
+     */
+    public void setLayoutBoundary(final boolean layoutBoundary) {
+        mLayoutBoundary = layoutBoundary;
+        if (mContentContainer != null) {
+            applyLayoutBoundary();
+        }
+    }
+
+    /**
+     * Display snapshot of the content saved in the previous session instead of progress, until
+     * the content is displayed for the first time. Snapshot of the displayed content is saved
+     * when the switcher leaves the screen, i.e. when fragment view is destroyed or widget is
+     * detached from window, or by {@link #saveSnapshot()}. Snapshot takes precedence over
+     * skeleton placeholder. Snapshot is read on a background thread and displayed when it is
+     * loaded, if progress is still displayed by then.
+     *
+     * @param snapshotCache cache of snapshots or null to disable snapshots
+     * @param key           key of this switcher content in the cache
+     */
+    public void setSnapshotCache(final SnapshotCache snapshotCache, final String key) {
+        if (snapshotCache != null && key == null) {
+            throw new NullPointerException("Snapshot key can't be null");
+        }
+        mSnapshotCache = snapshotCache;
+        mSnapshotKey = key;
+        final boolean placeholderShown = mSkeletonShown;
+        if (placeholderShown) {
+            hideSkeleton();
+        }
+        mSnapshot = null;
+        final int snapshotRequest = ++mSnapshotRequest;
+        if (snapshotCache != null && mContentTypeShown == TYPE_PROGRESS) {
+            snapshotCache.get(key, new SnapshotCache.Callback() {
+                @Override
+                public void onSnapshotLoaded(final Bitmap snapshot) {
+                    onSnapshotLoaded(snapshotRequest, snapshot);
+                }
+            });
+        }
+        if (mContentContainer != null && placeholderShown && isProgressDisplayed()
+                && !showSkeleton(false) && mShownView == null) {
+            restoreStateView(TYPE_PROGRESS);
+            if (mProgressView != null) {
+                showView(TYPE_PROGRESS, mProgressView, false);
+            }
+        }
+    }
+
+    private void onSnapshotLoaded(final int snapshotRequest, final Bitmap snapshot) {
+        // Snapshot is needed only until the real content is displayed for the first time
+        if (snapshot == null || snapshotRequest != mSnapshotRequest
+                || (mShownStates & (1 << TYPE_CONTENT)) != 0
+                || mContentTypeShown != TYPE_PROGRESS) {
+            return;
+        }
+        mSnapshot = new BitmapDrawable(mContext.getResources(), snapshot);
+        if (mContentContainer != null) {
+            showSkeleton(false);
+        }
+    }
+
+    /**
+     * Save snapshot of the content to the cache set by {@link #setSnapshotCache(SnapshotCache,
+     * String)}, if the content is displayed.
+     *
+     * @return true if snapshot was saved
+     */
+    public boolean saveSnapshot() {
+        if (mSnapshotCache == null || mContentView == null || mContentTypeShown != TYPE_CONTENT) {
+            return false;
+        }
+        return mSnapshotCache.put(mSnapshotKey, mContentView);
+    }
+
+    /**
+     * Release inactive state views when the system is low on memory. Released views are
+     * detached together with their drawables and inflated again on next use, with texts and
+     * click listeners set through the switcher. Only views inflated from known layouts can be
+     * released.
+     *
+     * @param release true to release state views on memory pressure
+     * @see MemoryTrimmer
+     */
+    public void setReleaseStateViewsOnTrim(final boolean release) {
+        if (release) {
+            MemoryTrimmer.register(mContext, this);
+        } else {
+            MemoryTrimmer.unregister(this);
+        }
+    }
+
+    @Override
+    public StateSubscription subscribe(final OnStateChangeListener listener) {
+        return mStateStream.subscribe(listener);
+    }
+
+    @Override
+    public void postState(final int type) {
+        mStateStream.post(type);
+    }
+
+    /**
+     * Start a new load. States posted with tokens of earlier loads are dropped from now on, so
+     * results of a superseded load which arrive late can't replace the state of the latest one.
+     * Can be called from any thread.
+     *
+     * @return token to pass to {@link #postState(int, long)} with the load result
+     */
+    public long newLoadToken() {
+        return mStateStream.newLoadToken();
+    }
+
+    /**
+     * @return true if no load was started after the one the token was issued for
+     */
+    public boolean isCurrentLoadToken(final long loadToken) {
+        return mStateStream.isCurrentLoadToken(loadToken);
+    }
+
+    /**
+     * Request the state change on behalf of a load from any thread, like {@link
+     * #postState(int)}. The state is dropped without touching views if a newer load was started,
+     * whether before the call or before the state could be applied.
+     *
+     * @param type      one of {@link #TYPE_PROGRESS}, {@link #TYPE_CONTENT}, {@link #TYPE_EMPTY}
+     *                  or {@link #TYPE_ERROR}
+     * @param loadToken token returned by {@link #newLoadToken()} when the load was started
+     * @return false if the state was dropped right away
+     */
+    public boolean postState(final int type, final long loadToken) {
+        return mStateStream.post(type, loadToken);
+    }
+
+    /**
+     * Called when the widget hosting the switcher is detached from window. Subscriptions are
+     * kept, because the widget can be attached again.
+     */
+    void onDetachedFromWindow() {
+        reportUnusedStateViews();
     }
 
     void setRootView(final View rootView) {
         initViewsFromRoot(rootView);
     }
 
+    ViewGroup getContentContainer() {
+        return mContentContainer;
+    }
+
+    View getStateView(final int type) {
+        switch (type) {
+            case TYPE_PROGRESS:
+                return mProgressView;
+            case TYPE_CONTENT:
+                return mContentView;
+            case TYPE_EMPTY:
+                return mEmptyView;
+            case TYPE_ERROR:
+                return mErrorView;
+            default:
+                throw new IllegalArgumentException("Unknown view type: " + type);
+        }
+    }
+
     void setContentContainer(final View content) {
         initViewFromContentContainer(content);
     }
@@ -433,6 +880,8 @@ public class ProgressSwitcher implements Switcher {
         }
         mProgressView = progressView;
         mContentContainer.addView(progressView);
+        // Let the next lookup register the added view
+        mStateViewsFound = false;
     }
 
     void addEmptyView(final View emptyView) {
@@ -441,6 +890,7 @@ public class ProgressSwitcher implements Switcher {
         }
         mEmptyView = emptyView;
         mContentContainer.addView(emptyView);
+        mStateViewsFound = false;
         emptyView.setVisibility(View.GONE);
     }
 
@@ -450,42 +900,173 @@ public class ProgressSwitcher implements Switcher {
         }
         mErrorView = errorView;
         mContentContainer.addView(errorView);
+        mStateViewsFound = false;
         errorView.setVisibility(View.GONE);
     }
 
     void reset() {
+        if (mRevealScheduler != null) {
+            mRevealScheduler.cancel(this);
+        }
+        TimeoutWheel.get().cancel(mProgressTimeout);
+        mInflateRequest++;
+        saveSnapshot();
+        reportUnusedStateViews();
+        mShownStates = mTextStates = 0;
+        mStateStream.clear();
+        mReleasedStates = 0;
+        mEmptyBindings.clear();
+        mErrorBindings.clear();
+        if (mSkeletonShown) {
+            hideSkeleton();
+        }
+        mStateMachine.reset(TYPE_PROGRESS);
         mContentTypeShown = TYPE_PROGRESS;
+        mStateViewsFound = false;
         mErrorView = mProgressView = mContentView = mEmptyView = null;
         mContentContainer = null;
     }
 
-
     void setContentShown(final int type, final boolean animate) {
+        SwitcherStrictMode.onSwitcherCall("setContentShown");
+        if (mRevealScheduler != null) {
+            if (type == TYPE_CONTENT && mContentTypeShown != TYPE_CONTENT
+                    && mRevealScheduler.schedule(this, animate)) {
+                return;
+            }
+            mRevealScheduler.cancel(this);
+        }
+        request(type, animate);
+    }
+
+    /**
+     * Apply content reveal queued by {@link RevealScheduler}.
+     */
+    void reveal(final boolean animate) {
+        request(TYPE_CONTENT, animate);
+    }
+
+    int getShownContentType() {
+        return mContentTypeShown;
+    }
+
+    /**
+     * Display state restored from saved instance state. Unlike {@link #setContentShown(int,
+     * boolean)} doesn't treat the already displayed state as redundant transition.
+     */
+    void restoreContentShown(final int type) {
+        if (type != mContentTypeShown) {
+            setContentShown(type, false);
+        }
+    }
+
+    private void request(final int type, final boolean animate) {
+        if (!mStateMachine.request(type, animate)) {
+            // Already displayed, let the renderer restore released view and report the call
+            showNow(type, animate);
+        }
+    }
+
+    /**
+     * Render state decided by the state machine.
+     */
+    private void showNow(final int type, final boolean animate) {
+        final boolean traced = SwitcherTrace.begin("setContentShown", type);
+        try {
+            setContentShownInternal(type, animate);
+        } finally {
+            SwitcherTrace.end(traced);
+        }
+    }
+
+    private void setContentShownInternal(final int type, final boolean animate) {
         ensureContent();
+        if (type != TYPE_PROGRESS) {
+            restoreStateView(type);
+        }
         if (mContentTypeShown == type) {
+            SwitcherStrictMode.onRedundantTransition(type);
             return;
         }
+        if (type == TYPE_PROGRESS) {
+            if (showSkeleton(animate)) {
+                mShownStates |= 1 << type;
+                mContentTypeShown = type;
+                mStateStream.publish(type);
+                updateProgressTimeout();
+                return;
+            }
+            restoreStateView(TYPE_PROGRESS);
+        }
+        if (mSkeletonShown) {
+            hideSkeleton();
+        }
+        if (type == TYPE_CONTENT) {
+            // Snapshot is needed only until the real content arrives
+            mSnapshot = null;
+        }
         switch (type) {
             case TYPE_PROGRESS:
-                showView(mProgressView, animate);
+                showView(TYPE_PROGRESS, mProgressView, animate);
                 break;
             case TYPE_CONTENT:
-                showView(mContentView, animate);
+                if (mContentView == null) {
+                    createContentView();
+                }
+                showView(TYPE_CONTENT, mContentView, animate);
                 break;
             case TYPE_EMPTY:
-                showView(mEmptyView, animate);
+                showView(TYPE_EMPTY, mEmptyView, animate);
                 break;
             case TYPE_ERROR:
-                showView(mErrorView, animate);
+                showView(TYPE_ERROR, mErrorView, animate);
                 break;
             default:
                 throw new IllegalArgumentException("Unknown view type: " + type);
         }
         mContentTypeShown = type;
+        mStateStream.publish(type);
+        updateProgressTimeout();
     }
 
-    int getShownContentType() {
-        return mContentTypeShown;
+    /**
+     * Set layouts from which state views were inflated, so they could be inflated again after
+     * they were released. 0 means that the view can't be released.
+     */
+    void setStateViewLayouts(final int progressViewResId, final int emptyViewResId,
+            final int errorViewResId) {
+        mProgressViewResId = progressViewResId;
+        mEmptyViewResId = emptyViewResId;
+        mErrorViewResId = errorViewResId;
+    }
+
+    /**
+     * Detach inactive state views and their drawables.
+     *
+     * @return estimated size of released bitmaps in bytes
+     */
+    long releaseStateViews() {
+        if (mContentContainer == null) {
+            return 0;
+        }
+        return releaseStateView(TYPE_PROGRESS, mProgressView, mProgressViewResId)
+                + releaseStateView(TYPE_EMPTY, mEmptyView, mEmptyViewResId)
+                + releaseStateView(TYPE_ERROR, mErrorView, mErrorViewResId);
+    }
+
+    /**
+     * Don't inflate progress view until it is displayed, e.g. because skeleton is displayed in
+     * its place. Progress layout must be set by {@link #setStateViewLayouts(int, int, int)}.
+     */
+    void deferProgressView() {
+        if (mProgressViewResId <= 0) {
+            throw new IllegalStateException("Progress layout isn't set");
+        }
+        mReleasedStates |= 1 << TYPE_PROGRESS;
+    }
+
+    int getReleasedStateViewCount() {
+        return Integer.bitCount(mReleasedStates);
     }
 
     private void initViewsFromRoot(final View rootView) {
@@ -507,16 +1088,46 @@ public class ProgressSwitcher implements Switcher {
                     "Content container should be derived from ViewGroup");
         }
         mContentContainer = (ViewGroup) container;
+        mStateViewsFound = false;
+        if (mLayoutBoundary) {
+            applyLayoutBoundary();
+        }
         ensureContent();
     }
 
     private void ensureContent() {
-        if (mContentView != null) {
+        if (mContentView != null || mStateViewsFound) {
             return;
         }
         if (mContentContainer == null) {
             throw new IllegalStateException("Content container not yet set");
         }
+        final boolean traced = SwitcherTrace.begin("ensureContent", mContentTypeShown);
+        try {
+            findStateViews();
+        } finally {
+            SwitcherTrace.end(traced);
+        }
+        mStateViewsFound = true;
+    }
+
+    private void createContentView() {
+        if (mContentFactory == null) {
+            throw new IllegalStateException("Content view should be initialized");
+        }
+        final boolean traced = SwitcherTrace.begin("createContentView", TYPE_CONTENT);
+        try {
+            final View view = mContentFactory.createContentView(mContext, mContentContainer);
+            if (view == null) {
+                throw new IllegalStateException("Content factory returned null view");
+            }
+            addContentView(view);
+        } finally {
+            SwitcherTrace.end(traced);
+        }
+    }
+
+    private void findStateViews() {
         if (mProgressView == null || mContentContainer.indexOfChild(mProgressView) < 0) {
             mProgressView = mContentContainer.findViewById(R.id.progress_view);
             if (mProgressView != null) {
@@ -543,34 +1154,214 @@ public class ProgressSwitcher implements Switcher {
         }
         // We are starting without a content, so assume we won't
         // have our data right away and start with the progress indicator.
-        if (mContentView == null && mProgressView != null) {
-            showView(mProgressView, false);
+        if (mContentView == null && !mSkeletonShown
+                && (mProgressView != null || isReleased(TYPE_PROGRESS))) {
+            if (mSnapshot == null || !showSkeleton(false)) {
+                restoreStateView(TYPE_PROGRESS);
+                showView(TYPE_PROGRESS, mProgressView, false);
+            }
+            updateProgressTimeout();
         }
     }
 
-    private void showView(final View view, final boolean animate) {
-        final View shownView = mShownView;
+    private void applyLayoutBoundary() {
+        if (mContentContainer instanceof SwitcherContainer) {
+            ((SwitcherContainer) mContentContainer).setLayoutBoundary(mLayoutBoundary);
+        }
+    }
 
-        if (animate) {
-            if (shownView != null) {
-                shownView.startAnimation(AnimationUtils.loadAnimation(mContext,
-                        mAnimationOut));
-            }
-            view.startAnimation(AnimationUtils.loadAnimation(mContext,
-                    mAnimationIn));
+    private void updateProgressTimeout() {
+        final TimeoutWheel wheel = TimeoutWheel.get();
+        if (mProgressTimeoutMs > 0 && mContentTypeShown == TYPE_PROGRESS
+                && mContentContainer != null) {
+            wheel.schedule(mProgressTimeout, mProgressTimeoutMs);
         } else {
-            if (shownView != null) {
-                shownView.clearAnimation();
-            }
+            wheel.cancel(mProgressTimeout);
+        }
+    }
+
+    private void onTextSet(final int type, final String method) {
+        if (SwitcherStrictMode.isEnabled()) {
+            SwitcherStrictMode.onSwitcherCall(method);
+            mTextStates |= 1 << type;
+        }
+    }
+
+    private void reportUnusedStateViews() {
+        if (!SwitcherStrictMode.isEnabled()) {
+            return;
+        }
+        reportUnusedStateView(TYPE_EMPTY, mEmptyView);
+        reportUnusedStateView(TYPE_ERROR, mErrorView);
+    }
 
-            view.clearAnimation();
+    private void reportUnusedStateView(final int type, final View view) {
+        final int mask = 1 << type;
+        if (view != null && (mShownStates & mask) == 0) {
+            SwitcherStrictMode.onUnusedStateView(type, (mTextStates & mask) != 0);
+            // Report each view only once
+            mShownStates |= mask;
         }
+    }
 
+    private boolean hasStateView(final int type) {
+        switch (type) {
+            case TYPE_PROGRESS:
+                return mProgressView != null || isReleased(type);
+            case TYPE_CONTENT:
+                return mContentView != null || mContentFactory != null;
+            case TYPE_EMPTY:
+                return mEmptyView != null || isReleased(type);
+            case TYPE_ERROR:
+                return mErrorView != null || isReleased(type);
+            default:
+                throw new IllegalArgumentException("Unknown view type: " + type);
+        }
+    }
+
+    private boolean isReleased(final int type) {
+        return (mReleasedStates & (1 << type)) != 0;
+    }
+
+    private long releaseStateView(final int type, final View view, final int layoutResId) {
+        if (view == null || layoutResId <= 0 || type == mContentTypeShown || view == mShownView) {
+            return 0;
+        }
+        // Don't release the view while it is animating out
+        if ((view.getAnimation() != null && !view.getAnimation().hasEnded())
+                || view.getTag(R.id.transition_listener) != null) {
+            return 0;
+        }
+        final long bytes = MemoryTrimmer.releaseDrawables(view);
+        mContentContainer.removeView(view);
+        setStateView(type, null);
+        mReleasedStates |= 1 << type;
+
+        return bytes;
+    }
+
+    private void restoreStateView(final int type) {
+        if (!isReleased(type) || mContentContainer == null) {
+            return;
+        }
+        mReleasedStates &= ~(1 << type);
+        final int layoutResId = type == TYPE_PROGRESS ? mProgressViewResId
+                : type == TYPE_EMPTY ? mEmptyViewResId : mErrorViewResId;
+        final boolean traced = SwitcherTrace.begin("restoreStateView", type);
+        final View view;
+        try {
+            view = DefaultLayouts.inflate(mContext, layoutResId, mContentContainer, false);
+        } finally {
+            SwitcherTrace.end(traced);
+        }
+        view.setVisibility(View.GONE);
+        mContentContainer.addView(view);
+        setStateView(type, view);
+        if (type == TYPE_EMPTY) {
+            mEmptyBindings.apply(view);
+        } else if (type == TYPE_ERROR) {
+            mErrorBindings.apply(view);
+        }
+    }
+
+    private void setStateView(final int type, final View view) {
+        switch (type) {
+            case TYPE_PROGRESS:
+                mProgressView = view;
+                break;
+            case TYPE_EMPTY:
+                mEmptyView = view;
+                break;
+            case TYPE_ERROR:
+                mErrorView = view;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown view type: " + type);
+        }
+    }
+
+    private void showView(final int type, final View view, final boolean animate) {
+        final boolean traced = SwitcherTrace.begin("showView", type);
+        mShownStates |= 1 << type;
+        if (animate && mContentContainer != null && mContentContainer.getWindowToken() == null) {
+            SwitcherStrictMode.onDetachedTransition(type);
+        }
+        try {
+            transition(mShownView, view, animate);
+            mShownView = view;
+            pauseStartedAnimations();
+        } finally {
+            SwitcherTrace.end(traced);
+        }
+    }
+
+    private void transition(final View from, final View to, final boolean animate) {
+        final SwitcherContainer container = mContentContainer instanceof SwitcherContainer
+                ? (SwitcherContainer) mContentContainer : null;
+        if (container != null) {
+            container.beginStateChange();
+        }
+        try {
+            mTransitionEngine.transition(from, to, TestMode.shouldAnimate(animate));
+        } finally {
+            if (container != null) {
+                container.endStateChange();
+            }
+        }
+    }
+
+    /**
+     * Show content snapshot or skeleton as background of content container.
+     *
+     * @return false if there is no placeholder to show
+     */
+    private boolean showSkeleton(final boolean animate) {
+        final Drawable placeholder;
+        if (mSnapshot != null) {
+            placeholder = mSnapshot;
+        } else if (mSkeleton != null && mSkeleton.canDraw(mContentView)) {
+            placeholder = mSkeleton;
+        } else {
+            return false;
+        }
+        final View shownView = mShownView;
         if (shownView != null) {
-            shownView.setVisibility(View.GONE);
+            transition(shownView, null, animate);
+            mShownView = null;
+        }
+        if (!mSkeletonShown) {
+            mContainerBackground = mContentContainer.getBackground();
+            mSkeletonShown = true;
+        }
+        setBackgroundInternal(mContentContainer, placeholder);
+        if (placeholder == mSkeleton) {
+            mSkeleton.setSourceView(mContentView);
+            mSkeleton.start();
+            pauseStartedAnimations();
+        }
+        return true;
+    }
+
+    private void pauseStartedAnimations() {
+        if (mContentContainer instanceof SwitcherContainer) {
+            ((SwitcherContainer) mContentContainer).pauseStartedAnimations();
+        }
+    }
+
+    private void hideSkeleton() {
+        if (mSkeleton != null) {
+            mSkeleton.stop();
+        }
+        if (mContentContainer != null) {
+            setBackgroundInternal(mContentContainer, mContainerBackground);
         }
-        view.setVisibility(View.VISIBLE);
-        mShownView = view;
+        mContainerBackground = null;
+        mSkeletonShown = false;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static void setBackgroundInternal(final View view, final Drawable background) {
+        view.setBackgroundDrawable(background);
     }
 
     private void setTextInternal(final CharSequence text, final View textView) {
@@ -584,7 +1375,7 @@ public class ProgressSwitcher implements Switcher {
 
     private void setOnClickListenerToView(final View view,
             final OnClickListener onClickListener, final int viewId) {
-        final View targetView = view.findViewById(viewId);
+        final View targetView = StateViewBindings.findView(view, viewId);
         if (targetView == null) {
             throw new IllegalArgumentException("View with id "
                     + Integer.toHexString(viewId) + "wasn't found");
@@ -601,16 +1392,24 @@ public class ProgressSwitcher implements Switcher {
 
         private View mContentView;
 
+        private ContentFactory mContentFactory;
+
         private View mProgressView;
 
         private View mEmptyView;
 
         private View mErrorView;
 
+        private int mProgressViewResId;
+
+        private int mEmptyViewResId;
+
+        private int mErrorViewResId;
+
         public Builder(final Context context) {
             mContext = context;
 
-            mRootView = new FrameLayout(context);
+            mRootView = new SwitcherContainer(context);
             mRootView.setId(R.id.content_container);
         }
 
@@ -630,10 +1429,28 @@ public class ProgressSwitcher implements Switcher {
             return this;
         }
 
+        /**
+         * Create content view the first time content is displayed instead of setting it up
+         * front.
+         *
+         * @see ProgressSwitcher#setContentFactory(ContentFactory)
+         */
+        public Builder setContentFactory(final ContentFactory contentFactory) {
+            if (contentFactory == null) {
+                throw new NullPointerException("Content factory couldn't be null");
+            }
+
+            mContentFactory = contentFactory;
+
+            return this;
+        }
+
         public Builder setProgressView(final int progressViewResId) {
             final View progressView = inflateViewFromResource(progressViewResId);
+            setProgressView(progressView);
+            mProgressViewResId = progressViewResId;
 
-            return setProgressView(progressView);
+            return this;
         }
 
         public Builder setProgressView(final View progressView) {
@@ -642,14 +1459,17 @@ public class ProgressSwitcher implements Switcher {
             }
 
             mProgressView = progressView;
+            mProgressViewResId = 0;
 
             return this;
         }
 
         public Builder setEmptyView(final int emptyViewResId) {
             final View emptyView = inflateViewFromResource(emptyViewResId);
+            setEmptyView(emptyView);
+            mEmptyViewResId = emptyViewResId;
 
-            return setEmptyView(emptyView);
+            return this;
         }
 
         public Builder setEmptyView(final View emptyView) {
@@ -658,14 +1478,17 @@ public class ProgressSwitcher implements Switcher {
             }
 
             mEmptyView = emptyView;
+            mEmptyViewResId = 0;
 
             return this;
         }
 
         public Builder setErrorView(final int errorViewResId) {
             final View errorView = inflateViewFromResource(errorViewResId);
+            setErrorView(errorView);
+            mErrorViewResId = errorViewResId;
 
-            return setErrorView(errorView);
+            return this;
         }
 
         public Builder setErrorView(final View errorView) {
@@ -674,16 +1497,19 @@ public class ProgressSwitcher implements Switcher {
             }
 
             mErrorView = errorView;
+            mErrorViewResId = 0;
 
             return this;
         }
 
         public ProgressSwitcher build() {
-            if (mContentView == null) {
-                throw new IllegalArgumentException("Content view wasn't set");
+            if (mContentView == null && mContentFactory == null) {
+                throw new IllegalArgumentException("Content view or factory wasn't set");
             }
 
-            mRootView.addView(mContentView);
+            if (mContentView != null) {
+                mRootView.addView(mContentView);
+            }
             if (mProgressView != null) {
                 mRootView.addView(mProgressView);
             }
@@ -694,12 +1520,16 @@ public class ProgressSwitcher implements Switcher {
                 mRootView.addView(mErrorView);
             }
 
-            return new ProgressSwitcher(mContext, mRootView);
+            final ProgressSwitcher progressSwitcher = new ProgressSwitcher(mContext, mRootView);
+            progressSwitcher.setStateViewLayouts(mProgressViewResId, mEmptyViewResId,
+                    mErrorViewResId);
+            progressSwitcher.setContentFactory(mContentFactory);
+
+            return progressSwitcher;
         }
 
         private View inflateViewFromResource(final int resId) {
-            final LayoutInflater inflater = LayoutInflater.from(mContext);
-            return inflater.inflate(resId, mRootView, false);
+            return DefaultLayouts.inflate(mContext, resId, mRootView, false);
         }
 
     }
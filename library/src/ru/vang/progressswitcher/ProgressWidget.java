@@ -5,11 +5,12 @@ import android.content.res.TypedArray;
 import android.os.Parcel;
 import android.os.Parcelable;
 import android.util.AttributeSet;
-import android.view.LayoutInflater;
 import android.view.View;
-import android.widget.FrameLayout;
 
-public class ProgressWidget extends FrameLayout implements Switcher {
+import ru.vang.progressswitcher.core.StateMachine;
+import ru.vang.progressswitcher.core.TransitionRecorder;
+
+public class ProgressWidget extends SwitcherContainer implements Switcher {
 
     private ProgressSwitcher mProgressSwitcher;
 
@@ -19,6 +20,10 @@ public class ProgressWidget extends FrameLayout implements Switcher {
 
     private int mErrorViewResId;
 
+    private SkeletonDrawable mSkeleton;
+
+    private boolean mReleaseStateViewsOnTrim;
+
     private ProgressWidget(final Context context) {
         super(context);
     }
@@ -55,6 +60,19 @@ public class ProgressWidget extends FrameLayout implements Switcher {
                     .getResourceId(R.styleable.ProgressWidget_animationOut,
                             ProgressSwitcher.DEFAULT_ANIMATION_OUT);
             mProgressSwitcher.setCustomAnimation(animationIn, animationOut);
+
+            if (typedArray.getBoolean(R.styleable.ProgressWidget_progressSkeleton, false)) {
+                mSkeleton = new SkeletonDrawable();
+                mSkeleton.setShimmerEnabled(
+                        typedArray.getBoolean(R.styleable.ProgressWidget_skeletonShimmer, false));
+                mSkeleton.setBlockColor(typedArray.getColor(
+                        R.styleable.ProgressWidget_skeletonColor,
+                        SkeletonDrawable.DEFAULT_BLOCK_COLOR));
+            }
+            mReleaseStateViewsOnTrim = typedArray.getBoolean(
+                    R.styleable.ProgressWidget_releaseStateViewsOnTrim, false);
+            setLayoutBoundary(typedArray.getBoolean(R.styleable.ProgressWidget_layoutBoundary,
+                    false));
         } finally {
             typedArray.recycle();
         }
@@ -63,7 +81,16 @@ public class ProgressWidget extends FrameLayout implements Switcher {
     @Override
     protected void onFinishInflate() {
         super.onFinishInflate();
+        final boolean traced = SwitcherTrace.begin("onFinishInflate",
+                mProgressSwitcher.getShownContentType());
+        try {
+            attachStateViews();
+        } finally {
+            SwitcherTrace.end(traced);
+        }
+    }
 
+    private void attachStateViews() {
         if (getChildCount() == 0) {
             throw new IllegalStateException("Content child must be provided");
         }
@@ -73,16 +100,35 @@ public class ProgressWidget extends FrameLayout implements Switcher {
         }
 
         final View content = getChildAt(0);
-        final LayoutInflater inflater = LayoutInflater.from(getContext());
-        final View progressView = inflater.inflate(mProgressViewResId, this, false);
-        final View emptyView = inflater.inflate(mEmptyViewResId, this, false);
-        final View errorView = inflater.inflate(mErrorViewResId, this, false);
+        final Context context = getContext();
+        final View emptyView = DefaultLayouts.inflate(context, mEmptyViewResId, this, false);
+        final View errorView = DefaultLayouts.inflate(context, mErrorViewResId, this, false);
 
         mProgressSwitcher.setContentContainer(this);
-        mProgressSwitcher.addProgressView(progressView);
+        mProgressSwitcher.setStateViewLayouts(mProgressViewResId, mEmptyViewResId,
+                mErrorViewResId);
+        if (mSkeleton != null) {
+            // Skeleton is displayed in place of progress, which is inflated only if the skeleton
+            // has nothing to draw
+            mProgressSwitcher.deferProgressView();
+            mProgressSwitcher.setProgressSkeleton(mSkeleton);
+        } else {
+            mProgressSwitcher.addProgressView(
+                    DefaultLayouts.inflate(context, mProgressViewResId, this, false));
+        }
         mProgressSwitcher.addEmptyView(emptyView);
         mProgressSwitcher.addErrorView(errorView);
         mProgressSwitcher.setContentView(content);
+        if (mReleaseStateViewsOnTrim) {
+            mProgressSwitcher.setReleaseStateViewsOnTrim(true);
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        mProgressSwitcher.saveSnapshot();
+        mProgressSwitcher.onDetachedFromWindow();
     }
 
     protected Parcelable onSaveInstanceState() {
@@ -98,7 +144,7 @@ public class ProgressWidget extends FrameLayout implements Switcher {
         final SavedState ss = (SavedState) state;
         super.onRestoreInstanceState(ss.getSuperState());
 
-        mProgressSwitcher.setContentShown(ss.shownType, false);
+        mProgressSwitcher.restoreContentShown(ss.shownType);
     }
 
     @Override
@@ -116,6 +162,28 @@ public class ProgressWidget extends FrameLayout implements Switcher {
         mProgressSwitcher.addContentView(view);
     }
 
+    /**
+     * @see ProgressSwitcher#addContentViewAsync(int)
+     */
+    public void addContentViewAsync(final int layoutResId) {
+        mProgressSwitcher.addContentViewAsync(layoutResId);
+    }
+
+    /**
+     * @see ProgressSwitcher#addContentViewAsync(int, OnContentInflatedListener)
+     */
+    public void addContentViewAsync(final int layoutResId,
+            final OnContentInflatedListener listener) {
+        mProgressSwitcher.addContentViewAsync(layoutResId, listener);
+    }
+
+    /**
+     * @see ProgressSwitcher#setContentFactory(ContentFactory)
+     */
+    public void setContentFactory(final ContentFactory contentFactory) {
+        mProgressSwitcher.setContentFactory(contentFactory);
+    }
+
     @Override
     public void setContentView(final int contentViewId) {
         throw new UnsupportedOperationException("Content view must be set through xml");
@@ -171,6 +239,93 @@ public class ProgressWidget extends FrameLayout implements Switcher {
         mProgressSwitcher.setCustomAnimation(animationIn, animationOut);
     }
 
+    /**
+     * @see ProgressSwitcher#setTransitionEngine(TransitionEngine)
+     */
+    public void setTransitionEngine(final TransitionEngine transitionEngine) {
+        mProgressSwitcher.setTransitionEngine(transitionEngine);
+    }
+
+    /**
+     * @see ProgressSwitcher#setProgressSkeleton(SkeletonDrawable)
+     */
+    public void setProgressSkeleton(final SkeletonDrawable skeleton) {
+        mSkeleton = skeleton;
+        mProgressSwitcher.setProgressSkeleton(skeleton);
+    }
+
+    /**
+     * @see ProgressSwitcher#setReleaseStateViewsOnTrim(boolean)
+     */
+    public void setReleaseStateViewsOnTrim(final boolean release) {
+        mReleaseStateViewsOnTrim = release;
+        mProgressSwitcher.setReleaseStateViewsOnTrim(release);
+    }
+
+    /**
+     * @see ProgressSwitcher#setRevealScheduler(RevealScheduler)
+     */
+    public void setRevealScheduler(final RevealScheduler revealScheduler) {
+        mProgressSwitcher.setRevealScheduler(revealScheduler);
+    }
+
+    /**
+     * @see ProgressSwitcher#setSnapshotCache(SnapshotCache, String)
+     */
+    public void setSnapshotCache(final SnapshotCache snapshotCache, final String key) {
+        mProgressSwitcher.setSnapshotCache(snapshotCache, key);
+    }
+
+    /**
+     * @see ProgressSwitcher#saveSnapshot()
+     */
+    public boolean saveSnapshot() {
+        return mProgressSwitcher.saveSnapshot();
+    }
+
+    /**
+     * @see ProgressSwitcher#setProgressTimeout(long)
+     */
+    public void setProgressTimeout(final long timeoutMs) {
+        mProgressSwitcher.setProgressTimeout(timeoutMs);
+    }
+
+    /**
+     * @see ProgressSwitcher#setProgressTimeout(long, int)
+     */
+    public void setProgressTimeout(final long timeoutMs, final int fallbackType) {
+        mProgressSwitcher.setProgressTimeout(timeoutMs, fallbackType);
+    }
+
+    /**
+     * @see ProgressSwitcher#setProgressDelay(long)
+     */
+    public void setProgressDelay(final long delayMs) {
+        mProgressSwitcher.setProgressDelay(delayMs);
+    }
+
+    /**
+     * @see ProgressSwitcher#setMinProgressTime(long)
+     */
+    public void setMinProgressTime(final long minTimeMs) {
+        mProgressSwitcher.setMinProgressTime(minTimeMs);
+    }
+
+    public void addStateListener(final StateMachine.Listener listener) {
+        mProgressSwitcher.addStateListener(listener);
+    }
+
+    public void removeStateListener(final StateMachine.Listener listener) {
+        mProgressSwitcher.removeStateListener(listener);
+    }
+
+    /**
+     * @see ProgressSwitcher#setTransitionRecorder(TransitionRecorder)
+     */
+    public void setTransitionRecorder(final TransitionRecorder recorder) {
+        mProgressSwitcher.setTransitionRecorder(recorder);
+    }
+
     @Override
     public void setOnEmptyViewClickListener(final OnClickListener onClickListener) {
         mProgressSwitcher.setOnEmptyViewClickListener(onClickListener);
@@ -253,7 +408,45 @@ public class ProgressWidget extends FrameLayout implements Switcher {
         return mProgressSwitcher.isErrorViewDisplayed();
     }
 
-    private static class SavedState extends BaseSavedState {
+    /**
+     * Subscribe to state changes. Unlike fragment subscriptions, subscriptions of the widget are
+     * kept while it is detached from window, e.g. as a ViewPager page or a recycled list row, and
+     * stay valid after it is attached again.
+     *
+     * @see Switcher#subscribe(OnStateChangeListener)
+     */
+    @Override
+    public StateSubscription subscribe(final OnStateChangeListener listener) {
+        return mProgressSwitcher.subscribe(listener);
+    }
+
+    @Override
+    public void postState(final int type) {
+        mProgressSwitcher.postState(type);
+    }
+
+    /**
+     * @see ProgressSwitcher#newLoadToken()
+     */
+    public long newLoadToken() {
+        return mProgressSwitcher.newLoadToken();
+    }
+
+    /**
+     * @see ProgressSwitcher#isCurrentLoadToken(long)
+     */
+    public boolean isCurrentLoadToken(final long loadToken) {
+        return mProgressSwitcher.isCurrentLoadToken(loadToken);
+    }
+
+    /**
+     * @see ProgressSwitcher#postState(int, long)
+     */
+    public boolean postState(final int type, final long loadToken) {
+        return mProgressSwitcher.postState(type, loadToken);
+    }
+
+    static class SavedState extends BaseSavedState {
 
         int shownType;
 
@@ -287,4 +480,8 @@ public class ProgressWidget extends FrameLayout implements Switcher {
         };
 
     }
+
+    ProgressSwitcher getProgressSwitcher() {
+        return mProgressSwitcher;
+    }
 }
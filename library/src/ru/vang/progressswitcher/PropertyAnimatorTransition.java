@@ -0,0 +1,197 @@
+package ru.vang.progressswitcher;
+
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.view.View;
+import android.view.ViewPropertyAnimator;
+
+/**
+ * Transition based on {@link ViewPropertyAnimator}. If a new transition is started while the
+ * previous one is running, views continue from their current alpha and translation instead of
+ * jumping to the end state. Animated views are rendered into a hardware layer only while the
+ * transition runs. Requires API 12.
+ */
+@TargetApi(Build.VERSION_CODES.HONEYCOMB_MR1)
+public class PropertyAnimatorTransition implements TransitionEngine {
+
+    public static final long DEFAULT_DURATION = 300;
+
+    private final long mDuration;
+
+    private final float mTranslationY;
+
+    public PropertyAnimatorTransition() {
+        this(DEFAULT_DURATION, 0);
+    }
+
+    /**
+     * @param duration     duration of the full transition in milliseconds
+     * @param translationY vertical offset from which appearing view slides in, in pixels
+     */
+    public PropertyAnimatorTransition(final long duration, final float translationY) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB_MR1) {
+            throw new UnsupportedOperationException(
+                    PropertyAnimatorTransition.class.getSimpleName() + " requires API 12");
+        }
+        mDuration = duration;
+        mTranslationY = translationY;
+    }
+
+    @Override
+    public void transition(final View from, final View to, final boolean animate) {
+        if (from != null && from != to) {
+            hide(from, animate);
+        }
+        if (to != null) {
+            show(to, animate);
+        }
+    }
+
+    private void show(final View view, final boolean animate) {
+        final boolean running = cancel(view);
+        final boolean hidden = view.getVisibility() != View.VISIBLE;
+        view.setVisibility(View.VISIBLE);
+        if (!animate) {
+            view.setAlpha(1f);
+            view.setTranslationY(0f);
+            return;
+        }
+        if (hidden && !running) {
+            view.setAlpha(0f);
+            view.setTranslationY(mTranslationY);
+        }
+        // Continue from the current alpha, so the remaining part takes the remaining time
+        final long duration = (long) (mDuration * (1f - view.getAlpha()));
+        start(view, view.animate().alpha(1f).translationY(0f), duration, false);
+    }
+
+    private void hide(final View view, final boolean animate) {
+        final boolean running = cancel(view);
+        if (!animate || (view.getVisibility() != View.VISIBLE && !running)) {
+            view.setVisibility(View.GONE);
+            view.setAlpha(1f);
+            view.setTranslationY(0f);
+            return;
+        }
+        final long duration = (long) (mDuration * view.getAlpha());
+        start(view, view.animate().alpha(0f), duration, true);
+    }
+
+    private static void start(final View view, final ViewPropertyAnimator animator,
+            final long duration, final boolean hide) {
+        final TransitionListener listener = new TransitionListener(view, hide);
+        view.setTag(R.id.transition_listener, listener);
+        view.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+        animator.setDuration(duration).setListener(listener).start();
+    }
+
+    /**
+     * Pause running transition of the view. Does nothing before API 19.
+     *
+     * @return true if transition was paused
+     */
+    static boolean pause(final View view) {
+        final Object listener = view.getTag(R.id.transition_listener);
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT
+                && listener instanceof TransitionListener
+                && ((TransitionListener) listener).pause();
+    }
+
+    static void resume(final View view) {
+        final Object listener = view.getTag(R.id.transition_listener);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT
+                && listener instanceof TransitionListener) {
+            ((TransitionListener) listener).resume();
+        }
+    }
+
+    /**
+     * Cancel running transition of the view, leaving its properties at the current values.
+     *
+     * @return true if transition was running
+     */
+    private static boolean cancel(final View view) {
+        final TransitionListener listener
+                = (TransitionListener) view.getTag(R.id.transition_listener);
+        view.animate().cancel();
+        view.animate().setListener(null);
+        // Animation which hasn't started yet is cancelled without notifying its listener
+        if (listener != null) {
+            listener.finish(true);
+        }
+
+        return listener != null;
+    }
+
+    private static final class TransitionListener extends AnimatorListenerAdapter {
+
+        private final View mView;
+
+        private final boolean mHide;
+
+        private final int mLayerType;
+
+        private boolean mCanceled;
+
+        private boolean mFinished;
+
+        private Animator mAnimator;
+
+        TransitionListener(final View view, final boolean hide) {
+            mView = view;
+            mHide = hide;
+            mLayerType = view.getLayerType();
+        }
+
+        @Override
+        public void onAnimationStart(final Animator animation) {
+            mAnimator = animation;
+        }
+
+        @Override
+        public void onAnimationCancel(final Animator animation) {
+            mCanceled = true;
+        }
+
+        @TargetApi(Build.VERSION_CODES.KITKAT)
+        boolean pause() {
+            if (mAnimator == null || mFinished || !mAnimator.isRunning()
+                    || mAnimator.isPaused()) {
+                return false;
+            }
+            mAnimator.pause();
+            return true;
+        }
+
+        @TargetApi(Build.VERSION_CODES.KITKAT)
+        void resume() {
+            if (mAnimator != null && !mFinished) {
+                mAnimator.resume();
+            }
+        }
+
+        @Override
+        public void onAnimationEnd(final Animator animation) {
+            finish(mCanceled);
+        }
+
+        void finish(final boolean canceled) {
+            if (mFinished) {
+                return;
+            }
+            mFinished = true;
+            mAnimator = null;
+            if (mView.getTag(R.id.transition_listener) == this) {
+                mView.setTag(R.id.transition_listener, null);
+            }
+            mView.setLayerType(mLayerType, null);
+            if (mHide && !canceled) {
+                SwitcherContainer.setStateViewVisibility(mView, View.GONE);
+                mView.setAlpha(1f);
+                mView.setTranslationY(0f);
+            }
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package ru.vang.progressswitcher;
+
+import android.os.Looper;
+import android.view.View;
+import android.view.View.OnClickListener;
+
+import java.util.Random;
+
+import ru.vang.progressswitcher.core.LoadTokens;
+
+/**
+ * Drives a switcher through progress, content and error states for a retryable load. Clicks on
+ * the error view start a retry; clicks are ignored while a retry is in flight. Failed loads can
+ * optionally be retried automatically with exponential backoff and random jitter, so that many
+ * clients failed by the same outage don't retry at once.
+ * <p/>
+ * <pre>
+ * RetryController controller = new RetryController(switcher, new RetryController.Action() {
+ *     public void onRetry(RetryController controller, long loadToken) {
+ *         // calls controller.onSuccess(loadToken) or controller.onFailure(loadToken)
+ *         api.load(callback);
+ *     }
+ * });
+ * controller.setAutoRetry(3, 1000, 30000);
+ * controller.start();
+ * </pre>
+ * Results may be reported from any thread. Each load gets its own token, so late results of a
+ * load which was cancelled or superseded are ignored.
+ */
+public class RetryController {
+
+    public static final long DEFAULT_INITIAL_DELAY_MS = 1000;
+
+    public static final long DEFAULT_MAX_DELAY_MS = 30000;
+
+    public static final float DEFAULT_JITTER = 0.5f;
+
+    /**
+     * Interface definition for a callback to be invoked when the load should be (re)started.
+     */
+    public interface Action {
+
+        /**
+         * Start the load. Result must be reported with {@link #onSuccess(long)}, {@link
+         * #onEmpty(long)} or {@link #onFailure(long)}.
+         *
+         * @param controller controller which requested the load
+         * @param loadToken  token of the load to report its result with
+         */
+        public void onRetry(RetryController controller, long loadToken);
+    }
+
+    private final Switcher mSwitcher;
+
+    private final Action mAction;
+
+    private final Random mRandom = new Random();
+
+    private final LoadTokens mLoadTokens = new LoadTokens();
+
+    private int mMaxAutoRetries;
+
+    private long mInitialDelay = DEFAULT_INITIAL_DELAY_MS;
+
+    private long mMaxDelay = DEFAULT_MAX_DELAY_MS;
+
+    private float mJitter = DEFAULT_JITTER;
+
+    private boolean mInFlight;
+
+    private boolean mAutoRetryPending;
+
+    private int mConsecutiveFailures;
+
+    private int mRetryCount;
+
+    private int mAutoRetryCount;
+
+    private int mIgnoredClickCount;
+
+    private final Runnable mAutoRetryRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mAutoRetryPending = false;
+            mAutoRetryCount++;
+            load(true);
+        }
+    };
+
+    /**
+     * Create controller and attach it to the error view of the switcher.
+     *
+     * @param switcher switcher with error view
+     * @param action   action which performs the load
+     */
+    public RetryController(final Switcher switcher, final Action action) {
+        if (switcher == null) {
+            throw new NullPointerException("Switcher can't be null");
+        }
+        if (action == null) {
+            throw new NullPointerException("Action can't be null");
+        }
+        mSwitcher = switcher;
+        mAction = action;
+        mSwitcher.setOnErrorViewClickListener(new OnClickListener() {
+            @Override
+            public void onClick(final View v) {
+                retry();
+            }
+        });
+    }
+
+    /**
+     * Retry failed loads automatically. Delay before n-th retry is {@code initialDelayMs * 2^(n
+     * - 1)}, capped by {@code maxDelayMs} and reduced by a random part of up to {@link
+     * #setJitter(float) jitter}.
+     *
+     * @param maxRetries     number of automatic retries after consecutive failures, 0 disables
+     *                       automatic retries
+     * @param initialDelayMs delay before the first automatic retry
+     * @param maxDelayMs     maximum delay between retries
+     */
+    public void setAutoRetry(final int maxRetries, final long initialDelayMs,
+            final long maxDelayMs) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("Retry count can't be negative");
+        }
+        if (initialDelayMs <= 0 || maxDelayMs < initialDelayMs) {
+            throw new IllegalArgumentException("Invalid retry delays: " + initialDelayMs
+                    + ", " + maxDelayMs);
+        }
+        mMaxAutoRetries = maxRetries;
+        mInitialDelay = initialDelayMs;
+        mMaxDelay = maxDelayMs;
+    }
+
+    /**
+     * @param jitter part of the backoff delay, from 0 to 1, which is randomly subtracted from it
+     */
+    public void setJitter(final float jitter) {
+        if (jitter < 0 || jitter > 1) {
+            throw new IllegalArgumentException("Jitter must be in [0, 1]: " + jitter);
+        }
+        mJitter = jitter;
+    }
+
+    /**
+     * Start the initial load without counting it as a retry, unless a load is already in flight.
+     */
+    public void start() {
+        runOnMainThread(new Runnable() {
+            @Override
+            public void run() {
+                if (mInFlight) {
+                    return;
+                }
+                cancelAutoRetry();
+                mConsecutiveFailures = 0;
+                load(false);
+            }
+        });
+    }
+
+    /**
+     * Retry the load, unless it is already in flight, in which case the retry is counted as
+     * ignored.
+     *
+     * @see #getIgnoredClickCount()
+     */
+    public void retry() {
+        runOnMainThread(new Runnable() {
+            @Override
+            public void run() {
+                if (mInFlight) {
+                    mIgnoredClickCount++;
+                    return;
+                }
+                cancelAutoRetry();
+                mRetryCount++;
+                load(true);
+            }
+        });
+    }
+
+    /**
+     * @param loadToken token passed to {@link Action#onRetry(RetryController, long)}
+     */
+    public void onSuccess(final long loadToken) {
+        finish(ProgressSwitcher.TYPE_CONTENT, loadToken);
+    }
+
+    /**
+     * @param loadToken token passed to {@link Action#onRetry(RetryController, long)}
+     */
+    public void onEmpty(final long loadToken) {
+        finish(ProgressSwitcher.TYPE_EMPTY, loadToken);
+    }
+
+    /**
+     * @param loadToken token passed to {@link Action#onRetry(RetryController, long)}
+     */
+    public void onFailure(final long loadToken) {
+        finish(ProgressSwitcher.TYPE_ERROR, loadToken);
+    }
+
+    /**
+     * Cancel pending automatic retry and forget the load in flight, e.g. when the screen is
+     * destroyed. Results reported afterwards are ignored, even if a new load is started.
+     */
+    public void cancel() {
+        runOnMainThread(new Runnable() {
+            @Override
+            public void run() {
+                cancelAutoRetry();
+                mInFlight = false;
+                mLoadTokens.next();
+            }
+        });
+    }
+
+    public boolean isInFlight() {
+        return mInFlight;
+    }
+
+    public boolean isAutoRetryPending() {
+        return mAutoRetryPending;
+    }
+
+    /**
+     * @return number of retries started by the user
+     */
+    public int getRetryCount() {
+        return mRetryCount;
+    }
+
+    public int getAutoRetryCount() {
+        return mAutoRetryCount;
+    }
+
+    /**
+     * @return number of retry clicks ignored because the load was in flight
+     */
+    public int getIgnoredClickCount() {
+        return mIgnoredClickCount;
+    }
+
+    public int getConsecutiveFailures() {
+        return mConsecutiveFailures;
+    }
+
+    private void load(final boolean animate) {
+        mInFlight = true;
+        final long loadToken = mLoadTokens.next();
+        mSwitcher.showProgress(animate);
+        mAction.onRetry(this, loadToken);
+    }
+
+    private void finish(final int type, final long loadToken) {
+        runOnMainThread(new Runnable() {
+            @Override
+            public void run() {
+                // Result of a cancelled or superseded load
+                if (!mInFlight || !mLoadTokens.isCurrent(loadToken)) {
+                    return;
+                }
+                mInFlight = false;
+                StateStream.applyState(mSwitcher, type, true);
+                if (type == ProgressSwitcher.TYPE_ERROR) {
+                    mConsecutiveFailures++;
+                    scheduleAutoRetry();
+                } else {
+                    mConsecutiveFailures = 0;
+                }
+            }
+        });
+    }
+
+    private void scheduleAutoRetry() {
+        if (mConsecutiveFailures > mMaxAutoRetries) {
+            return;
+        }
+        final int shift = Math.min(mConsecutiveFailures - 1, 30);
+        final long delay = Math.min(mInitialDelay << shift, mMaxDelay);
+        final long jitter = (long) (delay * mJitter * mRandom.nextFloat());
+        mAutoRetryPending = true;
+        SwitcherClock.get().postDelayed(mAutoRetryRunnable, delay - jitter);
+    }
+
+    private void cancelAutoRetry() {
+        if (mAutoRetryPending) {
+            mAutoRetryPending = false;
+            SwitcherClock.get().removeCallbacks(mAutoRetryRunnable);
+        }
+    }
+
+    private static void runOnMainThread(final Runnable runnable) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            runnable.run();
+        } else {
+            SwitcherClock.get().post(runnable);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package ru.vang.progressswitcher;
+
+import android.graphics.Rect;
+import android.view.View;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Spreads content reveals of many switchers over several frames. Reveals requested in the same
+ * frame are queued and applied at the start of the following frames; switchers visible on screen
+ * are revealed first. At least one reveal is applied per frame, so the queue always drains.
+ * <p/>
+ * Most of the reveal cost, measure, layout and draw of the revealed content, is paid later in
+ * the frame, so the number of reveals per frame is limited by {@link
+ * #setMaxRevealsPerFrame(int)}. The frame budget additionally limits time spent on applying the
+ * reveals themselves, e.g. in state change listeners.
+ * <p/>
+ * Switchers opt in with {@link ProgressSwitcher#setRevealScheduler(RevealScheduler)}. All
+ * methods must be called on the main thread. In {@link TestMode} reveals are applied
+ * immediately.
+ */
+public final class RevealScheduler {
+
+    public static final long DEFAULT_FRAME_BUDGET_MS = 8;
+
+    public static final int DEFAULT_MAX_REVEALS_PER_FRAME = 4;
+
+    private static final long NANOS_PER_MS = 1000000;
+
+    private static RevealScheduler sDefault;
+
+    private final Map<ProgressSwitcher, Boolean> mPending
+            = new LinkedHashMap<ProgressSwitcher, Boolean>();
+
+    private final List<ProgressSwitcher> mVisible = new ArrayList<ProgressSwitcher>();
+
+    private final List<ProgressSwitcher> mHidden = new ArrayList<ProgressSwitcher>();
+
+    private final Rect mVisibleRect = new Rect();
+
+    private long mFrameBudgetNanos = DEFAULT_FRAME_BUDGET_MS * NANOS_PER_MS;
+
+    private int mMaxRevealsPerFrame = DEFAULT_MAX_REVEALS_PER_FRAME;
+
+    private int mFrameReveals;
+
+    private final FrameTask mFrameTask = new FrameTask(new Runnable() {
+        @Override
+        public void run() {
+            doFrame();
+        }
+    });
+
+    /**
+     * @return process-wide scheduler
+     */
+    public static RevealScheduler getDefault() {
+        if (sDefault == null) {
+            sDefault = new RevealScheduler();
+        }
+        return sDefault;
+    }
+
+    /**
+     * Set time which reveals may take in a single frame.
+     *
+     * @param budgetMs budget in milliseconds, must be positive
+     */
+    public void setFrameBudget(final long budgetMs) {
+        if (budgetMs <= 0) {
+            throw new IllegalArgumentException("Frame budget must be positive");
+        }
+        mFrameBudgetNanos = budgetMs * NANOS_PER_MS;
+    }
+
+    /**
+     * Set number of reveals which may be applied in a single frame.
+     *
+     * @param maxReveals number of reveals, must be positive
+     */
+    public void setMaxRevealsPerFrame(final int maxReveals) {
+        if (maxReveals <= 0) {
+            throw new IllegalArgumentException("Number of reveals must be positive");
+        }
+        mMaxRevealsPerFrame = maxReveals;
+    }
+
+    public int getPendingCount() {
+        return mPending.size();
+    }
+
+    /**
+     * Queue content reveal of the switcher. Repeated requests for the same switcher are merged.
+     *
+     * @return false if the reveal should be applied right away
+     */
+    boolean schedule(final ProgressSwitcher switcher, final boolean animate) {
+        if (TestMode.isEnabled()) {
+            return false;
+        }
+        mPending.put(switcher, animate);
+        mFrameTask.post();
+
+        return true;
+    }
+
+    void cancel(final ProgressSwitcher switcher) {
+        mPending.remove(switcher);
+    }
+
+    boolean isPending(final ProgressSwitcher switcher) {
+        return mPending.containsKey(switcher);
+    }
+
+    private void doFrame() {
+        if (mPending.isEmpty()) {
+            return;
+        }
+        for (final ProgressSwitcher switcher : mPending.keySet()) {
+            (isOnScreen(switcher) ? mVisible : mHidden).add(switcher);
+        }
+        final long start = System.nanoTime();
+        mFrameReveals = 0;
+        try {
+            if (reveal(mVisible, start)) {
+                reveal(mHidden, start);
+            }
+        } finally {
+            mVisible.clear();
+            mHidden.clear();
+        }
+        if (!mPending.isEmpty()) {
+            mFrameTask.post();
+        }
+    }
+
+    /**
+     * @return false if the frame is full
+     */
+    private boolean reveal(final List<ProgressSwitcher> switchers, final long start) {
+        for (final Iterator<ProgressSwitcher> it = switchers.iterator(); it.hasNext(); ) {
+            if (mFrameReveals >= mMaxRevealsPerFrame || (mFrameReveals > 0
+                    && System.nanoTime() - start >= mFrameBudgetNanos)) {
+                return false;
+            }
+            final ProgressSwitcher switcher = it.next();
+            final Boolean animate = mPending.remove(switcher);
+            // Reveal may be cancelled by another reveal applied in this frame
+            if (animate != null) {
+                switcher.reveal(animate);
+                mFrameReveals++;
+            }
+        }
+        return true;
+    }
+
+    private boolean isOnScreen(final ProgressSwitcher switcher) {
+        final View container = switcher.getContentContainer();
+        return container != null && container.isShown()
+                && container.getGlobalVisibleRect(mVisibleRect);
+    }
+}
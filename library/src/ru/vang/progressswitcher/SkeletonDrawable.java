@@ -0,0 +1,268 @@
+package ru.vang.progressswitcher;
+
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.LinearGradient;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.Shader;
+import android.graphics.drawable.Animatable;
+import android.graphics.drawable.Drawable;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Drawable which renders gray placeholder blocks in place of the content while progress is
+ * displayed. Blocks are taken from the last laid out children of the content view or, if the
+ * content view has never been laid out, from a declared template. Blocks are collected when
+ * the skeleton is shown, never while drawing, and the content view is never measured for them.
+ * The whole skeleton is drawn by this single drawable, so no additional views are created.
+ *
+ * @see ProgressSwitcher#setProgressSkeleton(SkeletonDrawable)
+ */
+public class SkeletonDrawable extends Drawable implements Animatable {
+
+    public static final int DEFAULT_BLOCK_COLOR = 0xFFE0E0E0;
+
+    public static final int DEFAULT_SHIMMER_COLOR = 0xFFF2F2F2;
+
+    private static final long SHIMMER_DURATION = 1200;
+
+    private static final long FRAME_DELAY = 16;
+
+    private final Paint mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+    private final RectF mDrawRect = new RectF();
+
+    private final Matrix mShimmerMatrix = new Matrix();
+
+    private final List<Rect> mTemplate = new ArrayList<Rect>();
+
+    private final List<Rect> mBlocks = new ArrayList<Rect>();
+
+    private View mSourceView;
+
+    private int mBlockColor = DEFAULT_BLOCK_COLOR;
+
+    private int mShimmerColor = DEFAULT_SHIMMER_COLOR;
+
+    private float mCornerRadius;
+
+    private boolean mShimmerEnabled;
+
+    private LinearGradient mShimmer;
+
+    private boolean mRunning;
+
+    private long mStartTime;
+
+    private final Runnable mFrameRunnable = new Runnable() {
+        @Override
+        public void run() {
+            invalidateSelf();
+            if (mRunning) {
+                SwitcherClock.get().postDelayed(this, FRAME_DELAY);
+            }
+        }
+    };
+
+    public SkeletonDrawable() {
+        mPaint.setColor(mBlockColor);
+    }
+
+    /**
+     * Add placeholder block to the template. Template is used when the content view has never
+     * been laid out. Coordinates are relative to the content container.
+     *
+     * @param block bounds of the placeholder block
+     */
+    public void addTemplateBlock(final Rect block) {
+        if (block == null) {
+            throw new NullPointerException("Block can't be null");
+        }
+        mTemplate.add(new Rect(block));
+        resolveBlocks();
+        invalidateSelf();
+    }
+
+    public void clearTemplate() {
+        mTemplate.clear();
+        resolveBlocks();
+        invalidateSelf();
+    }
+
+    public boolean hasTemplate() {
+        return !mTemplate.isEmpty();
+    }
+
+    public void setBlockColor(final int color) {
+        mBlockColor = color;
+        mPaint.setColor(color);
+        updateShimmer();
+        invalidateSelf();
+    }
+
+    public void setShimmerColor(final int color) {
+        mShimmerColor = color;
+        updateShimmer();
+        invalidateSelf();
+    }
+
+    public void setCornerRadius(final float radius) {
+        mCornerRadius = radius;
+        invalidateSelf();
+    }
+
+    /**
+     * Enable or disable shimmer running over the placeholder blocks. Shimmer is animated only
+     * between {@link #start()} and {@link #stop()} calls.
+     *
+     * @param enabled true to draw shimmer
+     */
+    public void setShimmerEnabled(final boolean enabled) {
+        mShimmerEnabled = enabled;
+        if (!enabled) {
+            stop();
+        }
+        updateShimmer();
+        invalidateSelf();
+    }
+
+    public boolean isShimmerEnabled() {
+        return mShimmerEnabled;
+    }
+
+    /**
+     * Set view which children bounds will be used as placeholder blocks. Bounds are read right
+     * away from the last layout of the view, which is kept after it is hidden. If the view has
+     * never been laid out, template is used.
+     *
+     * @param view content view, must be a direct child of the view this drawable is set to
+     */
+    void setSourceView(final View view) {
+        mSourceView = view;
+        resolveBlocks();
+    }
+
+    boolean canDraw(final View contentView) {
+        return isLaidOut(contentView) || !mTemplate.isEmpty();
+    }
+
+    @Override
+    public void draw(final Canvas canvas) {
+        if (mShimmer != null) {
+            final Rect bounds = getBounds();
+            final long elapsed = (SwitcherClock.get().uptimeMillis() - mStartTime)
+                    % SHIMMER_DURATION;
+            final float fraction = (float) elapsed / SHIMMER_DURATION;
+            mShimmerMatrix.setTranslate(bounds.left + bounds.width() * (2 * fraction - 1),
+                    bounds.top);
+            mShimmer.setLocalMatrix(mShimmerMatrix);
+        }
+        for (int i = 0, size = mBlocks.size(); i < size; i++) {
+            mDrawRect.set(mBlocks.get(i));
+            canvas.drawRoundRect(mDrawRect, mCornerRadius, mCornerRadius, mPaint);
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!mShimmerEnabled || mRunning) {
+            return;
+        }
+        mRunning = true;
+        final SwitcherClock clock = SwitcherClock.get();
+        mStartTime = clock.uptimeMillis();
+        clock.postDelayed(mFrameRunnable, FRAME_DELAY);
+    }
+
+    @Override
+    public void stop() {
+        if (!mRunning) {
+            return;
+        }
+        mRunning = false;
+        SwitcherClock.get().removeCallbacks(mFrameRunnable);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    @Override
+    public void setAlpha(final int alpha) {
+        mPaint.setAlpha(alpha);
+        invalidateSelf();
+    }
+
+    @Override
+    public void setColorFilter(final ColorFilter colorFilter) {
+        mPaint.setColorFilter(colorFilter);
+        invalidateSelf();
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+
+    @Override
+    protected void onBoundsChange(final Rect bounds) {
+        super.onBoundsChange(bounds);
+        updateShimmer();
+    }
+
+    private void updateShimmer() {
+        final int width = getBounds().width();
+        if (!mShimmerEnabled || width <= 0) {
+            mShimmer = null;
+        } else {
+            mShimmer = new LinearGradient(0, 0, width, 0,
+                    new int[]{mBlockColor, mShimmerColor, mBlockColor}, null,
+                    Shader.TileMode.CLAMP);
+        }
+        mPaint.setShader(mShimmer);
+    }
+
+    private void resolveBlocks() {
+        mBlocks.clear();
+        final View source = mSourceView;
+        if (isLaidOut(source)) {
+            collectBlocks(source, source.getLeft(), source.getTop());
+            if (!mBlocks.isEmpty()) {
+                return;
+            }
+        }
+        mBlocks.addAll(mTemplate);
+    }
+
+    private static boolean isLaidOut(final View view) {
+        return view != null && view.getWidth() > 0 && view.getHeight() > 0;
+    }
+
+    private void collectBlocks(final View view, final int left, final int top) {
+        if (view instanceof ViewGroup && ((ViewGroup) view).getChildCount() > 0) {
+            final ViewGroup group = (ViewGroup) view;
+            final int offsetLeft = left - group.getScrollX();
+            final int offsetTop = top - group.getScrollY();
+            for (int i = 0, count = group.getChildCount(); i < count; i++) {
+                final View child = group.getChildAt(i);
+                if (child.getVisibility() != View.VISIBLE) {
+                    continue;
+                }
+                collectBlocks(child, offsetLeft + child.getLeft(), offsetTop + child.getTop());
+            }
+        } else if (view.getWidth() > 0 && view.getHeight() > 0) {
+            mBlocks.add(new Rect(left + view.getPaddingLeft(), top + view.getPaddingTop(),
+                    left + view.getWidth() - view.getPaddingRight(),
+                    top + view.getHeight() - view.getPaddingBottom()));
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package ru.vang.progressswitcher;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.util.Log;
+import android.view.View;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Bounded on-disk cache of downscaled content snapshots, shown by a switcher on the next launch
+ * instead of progress until the real content arrives. Snapshots are stored as raw pixels, so
+ * they are read through a memory-mapped file straight into a bitmap without decoding or
+ * intermediate copies. Snapshots are read and written on a background thread; when the cache
+ * exceeds its size, the least recently used ones are evicted.
+ *
+ * @see ProgressSwitcher#setSnapshotCache(SnapshotCache, String)
+ */
+public final class SnapshotCache {
+
+    private static final String TAG = "SnapshotCache";
+
+    public static final float DEFAULT_SCALE = 0.5f;
+
+    private static final String SUFFIX = ".snap";
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final int MAGIC = 0x50535331;
+
+    /**
+     * Magic, width and height as ints.
+     */
+    private static final int HEADER_SIZE = 12;
+
+    private static final int BYTES_PER_PIXEL = 4;
+
+    /**
+     * Single thread, so reads see snapshots of all earlier writes.
+     */
+    private static final Executor sExecutor = Executors.newSingleThreadExecutor();
+
+    private final File mDirectory;
+
+    private final long mMaxBytes;
+
+    private float mScale = DEFAULT_SCALE;
+
+    /**
+     * @param context  context
+     * @param name     name of the cache directory inside the app cache directory
+     * @param maxBytes maximum size of all snapshots of the cache
+     */
+    public SnapshotCache(final Context context, final String name, final long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        mDirectory = new File(context.getCacheDir(), name);
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * @param scale factor by which views are downscaled before they are stored, from 0 to 1
+     */
+    public void setScale(final float scale) {
+        if (scale <= 0 || scale > 1) {
+            throw new IllegalArgumentException("Scale must be in (0, 1]: " + scale);
+        }
+        mScale = scale;
+    }
+
+    /**
+     * Receives snapshot read on a background thread.
+     */
+    public interface Callback {
+
+        /**
+         * Called on the main thread.
+         *
+         * @param snapshot snapshot bitmap or null if there is no valid snapshot
+         */
+        public void onSnapshotLoaded(Bitmap snapshot);
+    }
+
+    /**
+     * Read snapshot stored for the key on a background thread and deliver it on the main
+     * thread. In {@link TestMode} snapshot is read synchronously.
+     */
+    public void get(final String key, final Callback callback) {
+        if (callback == null) {
+            throw new NullPointerException("Callback can't be null");
+        }
+        if (TestMode.isEnabled()) {
+            callback.onSnapshotLoaded(get(key));
+            return;
+        }
+        final File file = getFile(key);
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Bitmap snapshot = read(key, file);
+                SwitcherClock.get().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onSnapshotLoaded(snapshot);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Read snapshot stored for the key on the calling thread. Reading maps the file and copies
+     * the whole bitmap, so it shouldn't be called on the main thread, use {@link #get(String,
+     * Callback)} there.
+     *
+     * @return snapshot bitmap or null if there is no valid snapshot
+     */
+    public Bitmap get(final String key) {
+        return read(key, getFile(key));
+    }
+
+    private Bitmap read(final String key, final File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        RandomAccessFile randomAccessFile = null;
+        try {
+            randomAccessFile = new RandomAccessFile(file, "r");
+            final FileChannel channel = randomAccessFile.getChannel();
+            final long length = channel.size();
+            if (length < HEADER_SIZE) {
+                return null;
+            }
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            buffer.order(ByteOrder.nativeOrder());
+            final int magic = buffer.getInt();
+            final int width = buffer.getInt();
+            final int height = buffer.getInt();
+            if (magic != MAGIC || width <= 0 || height <= 0
+                    || length != HEADER_SIZE + (long) width * height * BYTES_PER_PIXEL) {
+                file.delete();
+                return null;
+            }
+            final Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            bitmap.copyPixelsFromBuffer(buffer);
+            file.setLastModified(System.currentTimeMillis());
+
+            return bitmap;
+        } catch (IOException e) {
+            Log.w(TAG, "Can't read snapshot " + key, e);
+            return null;
+        } finally {
+            closeQuietly(randomAccessFile);
+        }
+    }
+
+    /**
+     * Draw downscaled view into a bitmap on the calling thread, which must be the main one, and
+     * store it for the key on a background thread.
+     *
+     * @return false if the view isn't laid out yet
+     */
+    public boolean put(final String key, final View view) {
+        final int width = (int) (view.getWidth() * mScale);
+        final int height = (int) (view.getHeight() * mScale);
+        if (width <= 0 || height <= 0) {
+            return false;
+        }
+        final Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        final Canvas canvas = new Canvas(bitmap);
+        canvas.scale((float) width / view.getWidth(), (float) height / view.getHeight());
+        canvas.translate(-view.getScrollX(), -view.getScrollY());
+        view.draw(canvas);
+        put(key, bitmap);
+
+        return true;
+    }
+
+    /**
+     * Store bitmap for the key on a background thread. The bitmap must not be recycled or
+     * modified afterwards.
+     */
+    public void put(final String key, final Bitmap bitmap) {
+        final File file = getFile(key);
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                write(file, bitmap);
+                trimToSize();
+            }
+        });
+    }
+
+    /**
+     * Evict snapshot stored for the key.
+     */
+    public void remove(final String key) {
+        final File file = getFile(key);
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                file.delete();
+            }
+        });
+    }
+
+    public void clear() {
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (final File file : listSnapshots()) {
+                    file.delete();
+                }
+            }
+        });
+    }
+
+    private void write(final File file, final Bitmap bitmap) {
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            Log.w(TAG, "Can't create " + mDirectory);
+            return;
+        }
+        final File tempFile = new File(file.getPath() + TEMP_SUFFIX);
+        final long length = HEADER_SIZE + (long) bitmap.getRowBytes() * bitmap.getHeight();
+        RandomAccessFile randomAccessFile = null;
+        boolean written = false;
+        try {
+            randomAccessFile = new RandomAccessFile(tempFile, "rw");
+            randomAccessFile.setLength(length);
+            final MappedByteBuffer buffer = randomAccessFile.getChannel()
+                    .map(FileChannel.MapMode.READ_WRITE, 0, length);
+            buffer.order(ByteOrder.nativeOrder());
+            buffer.putInt(MAGIC);
+            buffer.putInt(bitmap.getWidth());
+            buffer.putInt(bitmap.getHeight());
+            bitmap.copyPixelsToBuffer(buffer);
+            buffer.force();
+            written = true;
+        } catch (IOException e) {
+            Log.w(TAG, "Can't write snapshot " + file, e);
+        } finally {
+            closeQuietly(randomAccessFile);
+        }
+        if (!written || !tempFile.renameTo(file)) {
+            tempFile.delete();
+        }
+    }
+
+    private void trimToSize() {
+        final File[] files = listSnapshots();
+        long size = 0;
+        for (final File file : files) {
+            size += file.length();
+        }
+        if (size <= mMaxBytes) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(final File lhs, final File rhs) {
+                final long lhsModified = lhs.lastModified();
+                final long rhsModified = rhs.lastModified();
+                return lhsModified < rhsModified ? -1 : (lhsModified == rhsModified ? 0 : 1);
+            }
+        });
+        for (int i = 0; i < files.length && size > mMaxBytes; i++) {
+            final long length = files[i].length();
+            if (files[i].delete()) {
+                size -= length;
+            }
+        }
+    }
+
+    private File[] listSnapshots() {
+        final File[] files = mDirectory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(final File file) {
+                return file.getName().endsWith(SUFFIX);
+            }
+        });
+        return files != null ? files : new File[0];
+    }
+
+    private File getFile(final String key) {
+        if (key == null) {
+            throw new NullPointerException("Key can't be null");
+        }
+        return new File(mDirectory, encodeKey(key) + SUFFIX);
+    }
+
+    /**
+     * Encode key reversibly, so that different keys never share a file.
+     */
+    private static String encodeKey(final String key) {
+        try {
+            return URLEncoder.encode(key, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            // UTF-8 is always supported
+            throw new IllegalStateException(e.getMessage());
+        }
+    }
+
+    private static void closeQuietly(final RandomAccessFile file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            file.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
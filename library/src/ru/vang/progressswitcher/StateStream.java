@@ -0,0 +1,222 @@
+package ru.vang.progressswitcher;
+
+import android.os.Looper;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ru.vang.progressswitcher.core.LoadTokens;
+import ru.vang.progressswitcher.core.StateMachine;
+
+/**
+ * Delivers committed state changes of a switcher to weakly held listeners and applies states
+ * posted from any thread. Both directions keep only the latest value: if several values arrive
+ * before the main thread handles them, intermediate ones are dropped.
+ * <p/>
+ * Posted states can carry load tokens: a state whose token is older than the latest issued one
+ * is dropped, both when it is posted and when it is about to be applied.
+ */
+final class StateStream {
+
+    private static final int NO_STATE = -1;
+
+    private static final int TYPE_BITS = 2;
+
+    private static final long TYPE_MASK = (1 << TYPE_BITS) - 1;
+
+    private final Switcher mSwitcher;
+
+    private final CopyOnWriteArrayList<Subscription> mSubscriptions
+            = new CopyOnWriteArrayList<Subscription>();
+
+    private final AtomicInteger mCommittedState = new AtomicInteger(NO_STATE);
+
+    private final AtomicBoolean mDispatchPending = new AtomicBoolean();
+
+    /**
+     * Posted state and its load token packed into one value.
+     */
+    private final AtomicLong mPostedState = new AtomicLong(NO_STATE);
+
+    private final LoadTokens mLoadTokens = new LoadTokens();
+
+    private final AtomicBoolean mApplyPending = new AtomicBoolean();
+
+    private int mDeliveredState = NO_STATE;
+
+    private final Runnable mDispatchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mDispatchPending.set(false);
+            dispatch(mCommittedState.get());
+        }
+    };
+
+    private final Runnable mApplyRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mApplyPending.set(false);
+            final long posted = mPostedState.getAndSet(NO_STATE);
+            // Newer load might have started after the state was posted
+            if (posted != NO_STATE && mLoadTokens.isCurrent(posted >>> TYPE_BITS)) {
+                applyState(mSwitcher, (int) (posted & TYPE_MASK), true);
+            }
+        }
+    };
+
+    StateStream(final Switcher switcher) {
+        mSwitcher = switcher;
+    }
+
+    StateSubscription subscribe(final OnStateChangeListener listener) {
+        if (listener == null) {
+            throw new NullPointerException("Listener can't be null");
+        }
+        final Subscription subscription = new Subscription(listener);
+        mSubscriptions.add(subscription);
+
+        return subscription;
+    }
+
+    /**
+     * Should be called on the main thread after the state change was committed.
+     */
+    void publish(final int type) {
+        mCommittedState.set(type);
+        if (mSubscriptions.isEmpty()) {
+            return;
+        }
+        if (mDispatchPending.compareAndSet(false, true)) {
+            schedule(mDispatchRunnable);
+        }
+    }
+
+    long newLoadToken() {
+        return mLoadTokens.next();
+    }
+
+    boolean isCurrentLoadToken(final long loadToken) {
+        return mLoadTokens.isCurrent(loadToken);
+    }
+
+    /**
+     * Post state on behalf of the latest load.
+     */
+    void post(final int type) {
+        post(type, mLoadTokens.getLatest());
+    }
+
+    /**
+     * @return false if the state was dropped because its token is stale
+     */
+    boolean post(final int type, final long loadToken) {
+        checkType(type);
+        if (loadToken < 0) {
+            throw new IllegalArgumentException("Invalid load token: " + loadToken);
+        }
+        final long value = (loadToken << TYPE_BITS) | type;
+        long posted;
+        do {
+            if (!mLoadTokens.isCurrent(loadToken)) {
+                return false;
+            }
+            posted = mPostedState.get();
+            // Don't let a late post of an older load replace the newer one
+            if (posted != NO_STATE && (posted >>> TYPE_BITS) > loadToken) {
+                return false;
+            }
+        } while (!mPostedState.compareAndSet(posted, value));
+        if (mApplyPending.compareAndSet(false, true)) {
+            schedule(mApplyRunnable);
+        }
+        return true;
+    }
+
+    void clear() {
+        for (final Subscription subscription : mSubscriptions) {
+            subscription.mListener.clear();
+        }
+        mSubscriptions.clear();
+        final SwitcherClock clock = SwitcherClock.get();
+        clock.removeCallbacks(mDispatchRunnable);
+        clock.removeCallbacks(mApplyRunnable);
+        mDispatchPending.set(false);
+        mApplyPending.set(false);
+        mPostedState.set(NO_STATE);
+        mDeliveredState = NO_STATE;
+    }
+
+    /**
+     * Run the runnable right away in {@link TestMode} if called on the main thread. States
+     * posted from other threads are always posted to the clock, so they are applied on the thread
+     * which drains it.
+     */
+    private static void schedule(final Runnable runnable) {
+        if (TestMode.isEnabled() && Looper.myLooper() == Looper.getMainLooper()) {
+            runnable.run();
+        } else {
+            SwitcherClock.get().post(runnable);
+        }
+    }
+
+    private void dispatch(final int type) {
+        if (type == NO_STATE || type == mDeliveredState) {
+            return;
+        }
+        mDeliveredState = type;
+        for (final Subscription subscription : mSubscriptions) {
+            final OnStateChangeListener listener = subscription.mListener.get();
+            if (listener == null) {
+                mSubscriptions.remove(subscription);
+            } else {
+                listener.onStateChanged(type);
+            }
+        }
+    }
+
+    static void applyState(final Switcher switcher, final int type, final boolean animate) {
+        switch (type) {
+            case ProgressSwitcher.TYPE_PROGRESS:
+                switcher.showProgress(animate);
+                break;
+            case ProgressSwitcher.TYPE_CONTENT:
+                switcher.showContent(animate);
+                break;
+            case ProgressSwitcher.TYPE_EMPTY:
+                switcher.showEmpty(animate);
+                break;
+            case ProgressSwitcher.TYPE_ERROR:
+                switcher.showError(animate);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown view type: " + type);
+        }
+    }
+
+    static void checkType(final int type) {
+        StateMachine.checkState(type);
+    }
+
+    private final class Subscription implements StateSubscription {
+
+        final WeakReference<OnStateChangeListener> mListener;
+
+        Subscription(final OnStateChangeListener listener) {
+            mListener = new WeakReference<OnStateChangeListener>(listener);
+        }
+
+        @Override
+        public void unsubscribe() {
+            mListener.clear();
+            mSubscriptions.remove(this);
+        }
+
+        @Override
+        public boolean isSubscribed() {
+            return mListener.get() != null && mSubscriptions.contains(this);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package ru.vang.progressswitcher;
+
+/**
+ * Subscription to state changes of a {@link Switcher}.
+ *
+ * @see Switcher#subscribe(OnStateChangeListener)
+ */
+public interface StateSubscription {
+
+    /**
+     * Stop delivering state changes to the listener. Can be called from any thread.
+     */
+    public void unsubscribe();
+
+    /**
+     * Returns true if the listener still receives state changes.
+     *
+     * @return a boolean indicating if the subscription is active
+     */
+    public boolean isSubscribed();
+
+}
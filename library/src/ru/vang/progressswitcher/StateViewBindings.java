@@ -0,0 +1,63 @@
+package ru.vang.progressswitcher;
+
+import android.util.SparseArray;
+import android.view.View;
+import android.view.View.OnClickListener;
+import android.widget.TextView;
+
+/**
+ * Texts and click listeners assigned to a state view, kept to be applied again when the view is
+ * inflated anew, e.g. after it was released or as a recycled list item.
+ */
+final class StateViewBindings {
+
+    static final int ROOT_VIEW_ID = View.NO_ID;
+
+    private final SparseArray<CharSequence> mTexts = new SparseArray<CharSequence>();
+
+    private final SparseArray<OnClickListener> mListeners = new SparseArray<OnClickListener>();
+
+    void putText(final int viewId, final CharSequence text) {
+        mTexts.put(viewId, text);
+    }
+
+    void putListener(final int viewId, final OnClickListener listener) {
+        mListeners.put(viewId, listener);
+    }
+
+    void clear() {
+        mTexts.clear();
+        mListeners.clear();
+    }
+
+    /**
+     * @throws IllegalStateException    if a text is assigned to a view which isn't a TextView
+     * @throws IllegalArgumentException if a listener is assigned to a missing view
+     */
+    void apply(final View root) {
+        for (int i = 0, size = mTexts.size(); i < size; i++) {
+            final View view = findView(root, mTexts.keyAt(i));
+            if (view instanceof TextView) {
+                ((TextView) view).setText(mTexts.valueAt(i));
+            } else {
+                throw new IllegalStateException(
+                        "Can't be used with a custom view. TextView should be provided.");
+            }
+        }
+        for (int i = 0, size = mListeners.size(); i < size; i++) {
+            final View view = findView(root, mListeners.keyAt(i));
+            if (view == null) {
+                throw new IllegalArgumentException("View with id "
+                        + Integer.toHexString(mListeners.keyAt(i)) + " wasn't found");
+            }
+            view.setOnClickListener(mListeners.valueAt(i));
+        }
+    }
+
+    /**
+     * @return the root itself for {@link #ROOT_VIEW_ID} or its descendant with the id
+     */
+    static View findView(final View root, final int viewId) {
+        return viewId == ROOT_VIEW_ID ? root : root.findViewById(viewId);
+    }
+}
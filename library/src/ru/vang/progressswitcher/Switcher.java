@@ -336,4 +336,27 @@ public interface Switcher {
      */
     public void setCustomAnimation(final int animationIn, final int animationOut);
 
+    /**
+     * Subscribe to state changes. Listener is called on the main thread after the change was
+     * committed. Listener is held weakly, so the caller should keep a reference to it. All
+     * subscriptions are cleared when the switcher's view hierarchy is destroyed.
+     *
+     * @param listener listener to be notified
+     * @return subscription which can be used to unsubscribe
+     * @see #postState(int)
+     */
+    public StateSubscription subscribe(OnStateChangeListener listener);
+
+    /**
+     * Request the state change from any thread. The state is applied on the main thread with
+     * animation. If several states are posted before they could be applied, only the latest one
+     * is applied.
+     *
+     * @param type one of {@link ProgressSwitcher#TYPE_PROGRESS}, {@link
+     *             ProgressSwitcher#TYPE_CONTENT}, {@link ProgressSwitcher#TYPE_EMPTY} or {@link
+     *             ProgressSwitcher#TYPE_ERROR}
+     * @see #subscribe(OnStateChangeListener)
+     */
+    public void postState(int type);
+
 }
@@ -0,0 +1,408 @@
+package ru.vang.progressswitcher;
+
+import android.content.Context;
+import android.database.DataSetObserver;
+import android.view.View;
+import android.view.View.OnClickListener;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.ListAdapter;
+import android.widget.WrapperListAdapter;
+
+/**
+ * Adapter decorator which displays progress, empty and error states as a single list item.
+ * The list stays attached and keeps its recycled views and scroll position, and switching the
+ * state only notifies this adapter about the data change. State items are inflated from the
+ * default state layouts (see {@link ProgressSwitcher#setDefaultProgressView(int)}) or from the
+ * layouts passed to {@link #setStateViewLayouts(int, int, int)}, and use their own view types.
+ * <p/>
+ * The wrapped adapter provides the content, so content view related methods aren't supported.
+ * Custom animations aren't applied to list items.
+ */
+public class SwitcherAdapter extends BaseAdapter implements WrapperListAdapter, Switcher {
+
+    private static final int STATE_VIEW_TYPE_COUNT = 3;
+
+    private final Context mContext;
+
+    private final ListAdapter mAdapter;
+
+    private int mProgressViewResId;
+
+    private int mEmptyViewResId;
+
+    private int mErrorViewResId;
+
+    private int mContentTypeShown = ProgressSwitcher.TYPE_PROGRESS;
+
+    private final StateViewBindings mEmptyBindings = new StateViewBindings();
+
+    private final StateViewBindings mErrorBindings = new StateViewBindings();
+
+    private final StateStream mStateStream = new StateStream(this);
+
+    private int mObserverCount;
+
+    private final DataSetObserver mDataSetObserver = new DataSetObserver() {
+        @Override
+        public void onChanged() {
+            if (mContentTypeShown == ProgressSwitcher.TYPE_CONTENT) {
+                notifyDataSetChanged();
+            }
+        }
+
+        @Override
+        public void onInvalidated() {
+            if (mContentTypeShown == ProgressSwitcher.TYPE_CONTENT) {
+                notifyDataSetInvalidated();
+            }
+        }
+    };
+
+    public SwitcherAdapter(final Context context, final ListAdapter adapter) {
+        if (adapter == null) {
+            throw new NullPointerException("Adapter can't be null");
+        }
+        mContext = context;
+        mAdapter = adapter;
+        mProgressViewResId = ProgressSwitcher.getDefaultProgressView();
+        mEmptyViewResId = ProgressSwitcher.getDefaultEmptyView();
+        mErrorViewResId = ProgressSwitcher.getDefaultErrorView();
+    }
+
+    /**
+     * Set layouts for state items. Layouts can't be changed after the adapter was set to the
+     * list, because the list caches recycled views by their type.
+     *
+     * @param progressViewResId progress layout
+     * @param emptyViewResId    empty layout or 0 if empty state isn't used
+     * @param errorViewResId    error layout or 0 if error state isn't used
+     */
+    public void setStateViewLayouts(final int progressViewResId, final int emptyViewResId,
+            final int errorViewResId) {
+        mProgressViewResId = progressViewResId;
+        mEmptyViewResId = emptyViewResId;
+        mErrorViewResId = errorViewResId;
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Observes the wrapped adapter only while this adapter is observed, so the wrapped adapter
+     * doesn't keep this one reachable after the list is gone.
+     */
+    @Override
+    public void registerDataSetObserver(final DataSetObserver observer) {
+        super.registerDataSetObserver(observer);
+        if (mObserverCount++ == 0) {
+            mAdapter.registerDataSetObserver(mDataSetObserver);
+        }
+    }
+
+    @Override
+    public void unregisterDataSetObserver(final DataSetObserver observer) {
+        super.unregisterDataSetObserver(observer);
+        if (--mObserverCount == 0) {
+            mAdapter.unregisterDataSetObserver(mDataSetObserver);
+        }
+    }
+
+    @Override
+    public ListAdapter getWrappedAdapter() {
+        return mAdapter;
+    }
+
+    @Override
+    public int getCount() {
+        return isContentDisplayed() ? mAdapter.getCount() : 1;
+    }
+
+    @Override
+    public Object getItem(final int position) {
+        return isContentDisplayed() ? mAdapter.getItem(position) : null;
+    }
+
+    @Override
+    public long getItemId(final int position) {
+        return isContentDisplayed() ? mAdapter.getItemId(position) : -1 - mContentTypeShown;
+    }
+
+    @Override
+    public boolean hasStableIds() {
+        return mAdapter.hasStableIds();
+    }
+
+    @Override
+    public int getViewTypeCount() {
+        return mAdapter.getViewTypeCount() + STATE_VIEW_TYPE_COUNT;
+    }
+
+    @Override
+    public int getItemViewType(final int position) {
+        if (isContentDisplayed()) {
+            return mAdapter.getItemViewType(position);
+        }
+        return mAdapter.getViewTypeCount() + getStateIndex(mContentTypeShown);
+    }
+
+    @Override
+    public boolean areAllItemsEnabled() {
+        return isContentDisplayed() && mAdapter.areAllItemsEnabled();
+    }
+
+    @Override
+    public boolean isEnabled(final int position) {
+        return isContentDisplayed() && mAdapter.isEnabled(position);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return isContentDisplayed() && mAdapter.isEmpty();
+    }
+
+    @Override
+    public View getView(final int position, final View convertView, final ViewGroup parent) {
+        if (isContentDisplayed()) {
+            return mAdapter.getView(position, convertView, parent);
+        }
+
+        final View view = convertView != null ? convertView
+                : DefaultLayouts.inflate(mContext, getStateLayout(mContentTypeShown), parent,
+                        false);
+        switch (mContentTypeShown) {
+            case ProgressSwitcher.TYPE_EMPTY:
+                mEmptyBindings.apply(view);
+                break;
+            case ProgressSwitcher.TYPE_ERROR:
+                mErrorBindings.apply(view);
+                break;
+            default:
+                break;
+        }
+        // Stretch the only item to the list height like a full screen state view.
+        final int height = parent.getHeight() - parent.getPaddingTop()
+                - parent.getPaddingBottom();
+        if (height > 0) {
+            view.setMinimumHeight(height);
+        }
+
+        return view;
+    }
+
+    @Override
+    public View getContentView() {
+        return null;
+    }
+
+    @Override
+    public void addContentView(final int layoutResId) {
+        throw new UnsupportedOperationException("Content is provided by wrapped adapter");
+    }
+
+    @Override
+    public void addContentView(final View view) {
+        throw new UnsupportedOperationException("Content is provided by wrapped adapter");
+    }
+
+    @Override
+    public void setContentView(final int contentViewId) {
+        throw new UnsupportedOperationException("Content is provided by wrapped adapter");
+    }
+
+    @Override
+    public void setContentView(final View contentView) {
+        throw new UnsupportedOperationException("Content is provided by wrapped adapter");
+    }
+
+    @Override
+    public void showContent() {
+        showContent(true);
+    }
+
+    @Override
+    public void showContent(final boolean animate) {
+        setContentShown(ProgressSwitcher.TYPE_CONTENT);
+    }
+
+    @Override
+    public void showProgress() {
+        showProgress(true);
+    }
+
+    @Override
+    public void showProgress(final boolean animate) {
+        if (mProgressViewResId <= 0) {
+            throw new IllegalStateException("Progress view layout should be specified");
+        }
+        setContentShown(ProgressSwitcher.TYPE_PROGRESS);
+    }
+
+    @Override
+    public void showEmpty() {
+        showEmpty(true);
+    }
+
+    @Override
+    public void showEmpty(final boolean animate) {
+        if (mEmptyViewResId <= 0) {
+            throw new IllegalStateException("Empty view layout should be specified");
+        }
+        setContentShown(ProgressSwitcher.TYPE_EMPTY);
+    }
+
+    @Override
+    public void showError() {
+        showError(true);
+    }
+
+    @Override
+    public void showError(final boolean animate) {
+        if (mErrorViewResId <= 0) {
+            throw new IllegalStateException("Error view layout should be specified");
+        }
+        setContentShown(ProgressSwitcher.TYPE_ERROR);
+    }
+
+    @Override
+    public void setEmptyText(final int resId) {
+        setEmptyText(mContext.getString(resId));
+    }
+
+    @Override
+    public void setEmptyText(final CharSequence text) {
+        setEmptyText(text, StateViewBindings.ROOT_VIEW_ID);
+    }
+
+    @Override
+    public void setEmptyText(final int resId, final int viewId) {
+        setEmptyText(mContext.getString(resId), viewId);
+    }
+
+    @Override
+    public void setEmptyText(final CharSequence text, final int viewId) {
+        mEmptyBindings.putText(viewId, text);
+        if (mContentTypeShown == ProgressSwitcher.TYPE_EMPTY) {
+            notifyDataSetChanged();
+        }
+    }
+
+    @Override
+    public void setErrorText(final int resId) {
+        setErrorText(mContext.getString(resId));
+    }
+
+    @Override
+    public void setErrorText(final CharSequence text) {
+        setErrorText(text, R.id.error_text);
+    }
+
+    @Override
+    public void setErrorText(final int resId, final int viewId) {
+        setErrorText(mContext.getString(resId), viewId);
+    }
+
+    @Override
+    public void setErrorText(final CharSequence text, final int viewId) {
+        mErrorBindings.putText(viewId, text);
+        if (mContentTypeShown == ProgressSwitcher.TYPE_ERROR) {
+            notifyDataSetChanged();
+        }
+    }
+
+    @Override
+    public void setOnEmptyViewClickListener(final OnClickListener onClickListener) {
+        setOnEmptyViewClickListener(onClickListener, StateViewBindings.ROOT_VIEW_ID);
+    }
+
+    @Override
+    public void setOnEmptyViewClickListener(final OnClickListener onClickListener,
+            final int viewId) {
+        mEmptyBindings.putListener(viewId, onClickListener);
+        if (mContentTypeShown == ProgressSwitcher.TYPE_EMPTY) {
+            notifyDataSetChanged();
+        }
+    }
+
+    @Override
+    public void setOnErrorViewClickListener(final OnClickListener onClickListener) {
+        setOnErrorViewClickListener(onClickListener, StateViewBindings.ROOT_VIEW_ID);
+    }
+
+    @Override
+    public void setOnErrorViewClickListener(final OnClickListener onClickListener,
+            final int viewId) {
+        mErrorBindings.putListener(viewId, onClickListener);
+        if (mContentTypeShown == ProgressSwitcher.TYPE_ERROR) {
+            notifyDataSetChanged();
+        }
+    }
+
+    @Override
+    public boolean isProgressDisplayed() {
+        return mContentTypeShown == ProgressSwitcher.TYPE_PROGRESS;
+    }
+
+    @Override
+    public boolean isContentDisplayed() {
+        return mContentTypeShown == ProgressSwitcher.TYPE_CONTENT;
+    }
+
+    @Override
+    public boolean isEmptyViewDisplayed() {
+        return mContentTypeShown == ProgressSwitcher.TYPE_EMPTY;
+    }
+
+    @Override
+    public boolean isErrorViewDisplayed() {
+        return mContentTypeShown == ProgressSwitcher.TYPE_ERROR;
+    }
+
+    @Override
+    public void setCustomAnimation(final int animationIn, final int animationOut) {
+        // List items aren't animated
+    }
+
+    @Override
+    public StateSubscription subscribe(final OnStateChangeListener listener) {
+        return mStateStream.subscribe(listener);
+    }
+
+    @Override
+    public void postState(final int type) {
+        mStateStream.post(type);
+    }
+
+    private void setContentShown(final int type) {
+        if (mContentTypeShown == type) {
+            return;
+        }
+        mContentTypeShown = type;
+        notifyDataSetChanged();
+        mStateStream.publish(type);
+    }
+
+    private int getStateLayout(final int type) {
+        switch (type) {
+            case ProgressSwitcher.TYPE_PROGRESS:
+                return mProgressViewResId;
+            case ProgressSwitcher.TYPE_EMPTY:
+                return mEmptyViewResId;
+            case ProgressSwitcher.TYPE_ERROR:
+                return mErrorViewResId;
+            default:
+                throw new IllegalArgumentException("Unknown view type: " + type);
+        }
+    }
+
+    private static int getStateIndex(final int type) {
+        switch (type) {
+            case ProgressSwitcher.TYPE_PROGRESS:
+                return 0;
+            case ProgressSwitcher.TYPE_EMPTY:
+                return 1;
+            case ProgressSwitcher.TYPE_ERROR:
+                return 2;
+            default:
+                throw new IllegalArgumentException("Unknown view type: " + type);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package ru.vang.progressswitcher;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import ru.vang.progressswitcher.core.Clock;
+
+/**
+ * Source of time and delayed execution for all timing inside the library. By default time is
+ * taken from {@link SystemClock#uptimeMillis()} and callbacks are run on the main thread. In
+ * {@link TestMode} the clock is replaced by a {@link ManualClock}.
+ */
+public abstract class SwitcherClock {
+
+    private static final SwitcherClock SYSTEM_CLOCK = new SystemSwitcherClock();
+
+    private static volatile SwitcherClock sClock = SYSTEM_CLOCK;
+
+    /**
+     * Clock of the core state machines. Delegates to the current clock on every call, so state
+     * machines created before {@link TestMode} was enabled follow the manual clock too.
+     */
+    private static final Clock CORE_CLOCK = new Clock() {
+        @Override
+        public long uptimeMillis() {
+            return sClock.uptimeMillis();
+        }
+
+        @Override
+        public void postDelayed(final Runnable runnable, final long delayMillis) {
+            sClock.postDelayed(runnable, delayMillis);
+        }
+
+        @Override
+        public void removeCallbacks(final Runnable runnable) {
+            sClock.removeCallbacks(runnable);
+        }
+    };
+
+    /**
+     * Returns clock used by the library.
+     *
+     * @return current clock
+     */
+    public static SwitcherClock get() {
+        return sClock;
+    }
+
+    static Clock getCoreClock() {
+        return CORE_CLOCK;
+    }
+
+    static void set(final SwitcherClock clock) {
+        sClock = clock == null ? SYSTEM_CLOCK : clock;
+    }
+
+    /**
+     * Returns milliseconds since some fixed point, not counting time spent in deep sleep.
+     *
+     * @return current time in milliseconds
+     */
+    public abstract long uptimeMillis();
+
+    /**
+     * Run callback after the specified delay.
+     *
+     * @param runnable    callback to run
+     * @param delayMillis delay in milliseconds
+     */
+    public abstract void postDelayed(Runnable runnable, long delayMillis);
+
+    /**
+     * Remove all pending posts of the callback.
+     *
+     * @param runnable callback to remove
+     */
+    public abstract void removeCallbacks(Runnable runnable);
+
+    public void post(final Runnable runnable) {
+        postDelayed(runnable, 0);
+    }
+
+    private static final class SystemSwitcherClock extends SwitcherClock {
+
+        private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public long uptimeMillis() {
+            return SystemClock.uptimeMillis();
+        }
+
+        @Override
+        public void postDelayed(final Runnable runnable, final long delayMillis) {
+            mHandler.postDelayed(runnable, delayMillis);
+        }
+
+        @Override
+        public void removeCallbacks(final Runnable runnable) {
+            mHandler.removeCallbacks(runnable);
+        }
+    }
+}
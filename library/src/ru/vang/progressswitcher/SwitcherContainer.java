@@ -0,0 +1,279 @@
+package ru.vang.progressswitcher;
+
+import android.content.Context;
+import android.graphics.Rect;
+import android.util.AttributeSet;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewParent;
+import android.view.ViewTreeObserver;
+import android.widget.FrameLayout;
+
+/**
+ * Container of switcher state views which can act as a layout boundary. By default showing a
+ * state view requests layout of every ancestor up to the window, so the whole screen is measured
+ * again. In layout boundary mode, if the container size doesn't depend on its children, i.e. its
+ * width and height are fixed or {@code match_parent}, layout requests caused by switching state
+ * views are handled by measuring and laying out the container alone, right before the next frame
+ * is drawn. Layout requests of the container itself, e.g. on visibility, padding or layout params
+ * change, reach ancestors as usual.
+ * <p/>
+ * Layout boundary mode is correct only if the parent doesn't measure the container by its
+ * content, e.g. when the container is {@code match_parent} in a {@code wrap_content} parent.
+ * <p/>
+ * Container also tracks whether it is visible to the user: attached, in a visible window, shown
+ * and at least partly on screen. While it isn't, animations which would keep running without
+ * being drawn, like animated drawables, indeterminate progress bars and property animator
+ * transitions, are paused.
+ */
+public class SwitcherContainer extends FrameLayout {
+
+    private boolean mLayoutBoundary;
+
+    private boolean mRelayoutPending;
+
+    private int mStateChangeDepth;
+
+    private boolean mPauseAnimationsWhenHidden = true;
+
+    private boolean mAttached;
+
+    private boolean mVisibleToUser;
+
+    private final AnimationPauser mAnimationPauser = new AnimationPauser();
+
+    private final Rect mVisibleRect = new Rect();
+
+    private final ViewTreeObserver.OnScrollChangedListener mOnScrollChangedListener
+            = new ViewTreeObserver.OnScrollChangedListener() {
+        @Override
+        public void onScrollChanged() {
+            updateVisibleToUser();
+        }
+    };
+
+    private final ViewTreeObserver.OnGlobalLayoutListener mOnGlobalLayoutListener
+            = new ViewTreeObserver.OnGlobalLayoutListener() {
+        @Override
+        public void onGlobalLayout() {
+            updateVisibleToUser();
+        }
+    };
+
+    private final ViewTreeObserver.OnPreDrawListener mRelayoutListener
+            = new ViewTreeObserver.OnPreDrawListener() {
+        @Override
+        public boolean onPreDraw() {
+            cancelRelayout();
+            relayout();
+            // Container is laid out already, so the frame can be drawn
+            return true;
+        }
+    };
+
+    public SwitcherContainer(final Context context) {
+        super(context);
+    }
+
+    public SwitcherContainer(final Context context, final AttributeSet attrs) {
+        super(context, attrs);
+    }
+
+    public SwitcherContainer(final Context context, final AttributeSet attrs,
+            final int defStyle) {
+        super(context, attrs, defStyle);
+    }
+
+    /**
+     * @param layoutBoundary true to keep layout requests of state views inside the container
+     *                       when its size is fixed
+     */
+    public void setLayoutBoundary(final boolean layoutBoundary) {
+        mLayoutBoundary = layoutBoundary;
+        if (!layoutBoundary && mRelayoutPending) {
+            cancelRelayout();
+            super.requestLayout();
+        }
+    }
+
+    public boolean isLayoutBoundary() {
+        return mLayoutBoundary;
+    }
+
+    /**
+     * @param pause true to pause animations while the container isn't visible to the user,
+     *              which is the default
+     */
+    public void setPauseAnimationsWhenHidden(final boolean pause) {
+        mPauseAnimationsWhenHidden = pause;
+        if (!pause) {
+            mAnimationPauser.resume(this);
+        } else if (!mVisibleToUser) {
+            mAnimationPauser.pause(this);
+        }
+    }
+
+    /**
+     * @return true if the container is attached, its window is visible, it is shown and at least
+     * partly on screen
+     */
+    public boolean isVisibleToUser() {
+        return mVisibleToUser;
+    }
+
+    /**
+     * Pause animations started in the container while it isn't visible to the user, e.g. of a
+     * state view shown meanwhile.
+     */
+    void pauseStartedAnimations() {
+        if (mPauseAnimationsWhenHidden && !mVisibleToUser) {
+            mAnimationPauser.pauseStarted(this);
+        }
+    }
+
+    /**
+     * Layout requests made until {@link #endStateChange()} come from switching state views and
+     * may be kept inside the container. Calls may be nested.
+     */
+    void beginStateChange() {
+        mStateChangeDepth++;
+    }
+
+    void endStateChange() {
+        mStateChangeDepth--;
+    }
+
+    /**
+     * Change visibility of a state view outside of {@link #beginStateChange()}, e.g. when its
+     * hide animation ends.
+     */
+    static void setStateViewVisibility(final View view, final int visibility) {
+        final ViewParent parent = view.getParent();
+        if (!(parent instanceof SwitcherContainer)) {
+            view.setVisibility(visibility);
+            return;
+        }
+        final SwitcherContainer container = (SwitcherContainer) parent;
+        container.beginStateChange();
+        try {
+            view.setVisibility(visibility);
+        } finally {
+            container.endStateChange();
+        }
+    }
+
+    /**
+     * Called when the container becomes visible to the user or stops being visible.
+     *
+     * @param visible true if the container is visible now
+     */
+    protected void onVisibleToUserChanged(final boolean visible) {
+        if (!mPauseAnimationsWhenHidden) {
+            return;
+        }
+        if (visible) {
+            mAnimationPauser.resume(this);
+        } else {
+            mAnimationPauser.pause(this);
+        }
+    }
+
+    @Override
+    public void requestLayout() {
+        if (mStateChangeDepth == 0 || !canStopLayoutRequest()) {
+            super.requestLayout();
+            return;
+        }
+        // Mark this container only, so the request doesn't reach ancestors
+        forceLayout();
+        if (!mRelayoutPending) {
+            mRelayoutPending = true;
+            getViewTreeObserver().addOnPreDrawListener(mRelayoutListener);
+            // Schedule traversal, which calls the listener before drawing
+            invalidate();
+        }
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mAttached = true;
+        final ViewTreeObserver observer = getViewTreeObserver();
+        observer.addOnScrollChangedListener(mOnScrollChangedListener);
+        observer.addOnGlobalLayoutListener(mOnGlobalLayoutListener);
+        updateVisibleToUser();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(final int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        updateVisibleToUser();
+    }
+
+    @Override
+    protected void onVisibilityChanged(final View changedView, final int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        updateVisibleToUser();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        mAttached = false;
+        final ViewTreeObserver observer = getViewTreeObserver();
+        observer.removeOnScrollChangedListener(mOnScrollChangedListener);
+        removeOnGlobalLayoutListener(observer);
+        updateVisibleToUser();
+        if (mRelayoutPending) {
+            cancelRelayout();
+            // Let the next attach lay the container out as usual
+            forceLayout();
+        }
+    }
+
+    private void cancelRelayout() {
+        mRelayoutPending = false;
+        getViewTreeObserver().removeOnPreDrawListener(mRelayoutListener);
+    }
+
+    private void updateVisibleToUser() {
+        final boolean visible = mAttached && getWindowVisibility() == VISIBLE
+                && isShown() && getGlobalVisibleRect(mVisibleRect);
+        if (visible != mVisibleToUser) {
+            mVisibleToUser = visible;
+            onVisibleToUserChanged(visible);
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private void removeOnGlobalLayoutListener(final ViewTreeObserver observer) {
+        observer.removeGlobalOnLayoutListener(mOnGlobalLayoutListener);
+    }
+
+    private boolean canStopLayoutRequest() {
+        if (!mLayoutBoundary || getWindowToken() == null || getWidth() == 0
+                || getHeight() == 0) {
+            return false;
+        }
+        final ViewGroup.LayoutParams params = getLayoutParams();
+        return params != null && params.width != ViewGroup.LayoutParams.WRAP_CONTENT
+                && params.height != ViewGroup.LayoutParams.WRAP_CONTENT;
+    }
+
+    private void relayout() {
+        if (!isLayoutRequested()) {
+            // Laid out by a traversal requested meanwhile
+            return;
+        }
+        if (!canStopLayoutRequest()) {
+            super.requestLayout();
+            return;
+        }
+        final int width = getWidth();
+        final int height = getHeight();
+        measure(MeasureSpec.makeMeasureSpec(width, MeasureSpec.EXACTLY),
+                MeasureSpec.makeMeasureSpec(height, MeasureSpec.EXACTLY));
+        layout(getLeft(), getTop(), getRight(), getBottom());
+        invalidate();
+    }
+}
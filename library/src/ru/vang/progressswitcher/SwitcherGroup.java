@@ -0,0 +1,153 @@
+package ru.vang.progressswitcher;
+
+import android.os.Looper;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Group of named regions, each backed by its own {@link Switcher}. States of many regions can be
+ * changed at once with {@link #edit()}: all changes of the batch are applied in a single main
+ * thread message, so they are laid out in one pass, and their transition animations start from
+ * the same frame.
+ * <p/>
+ * <pre>
+ * group.edit()
+ *         .showContent("news")
+ *         .showError("weather")
+ *         .apply(true);
+ * </pre>
+ */
+public class SwitcherGroup {
+
+    private final Map<String, Switcher> mRegions = new LinkedHashMap<String, Switcher>();
+
+    /**
+     * Add region to the group. If region with the same name already exists, it will be replaced.
+     *
+     * @param name     region name
+     * @param switcher switcher which displays region states
+     */
+    public void addRegion(final String name, final Switcher switcher) {
+        if (name == null) {
+            throw new NullPointerException("Region name can't be null");
+        }
+        if (switcher == null) {
+            throw new NullPointerException("Switcher can't be null");
+        }
+        mRegions.put(name, switcher);
+    }
+
+    public void removeRegion(final String name) {
+        mRegions.remove(name);
+    }
+
+    public Switcher getRegion(final String name) {
+        return mRegions.get(name);
+    }
+
+    /**
+     * Start a batch of region state changes. Changes are applied only by {@link
+     * Editor#apply(boolean)}.
+     *
+     * @return editor for the batch
+     */
+    public Editor edit() {
+        return new Editor();
+    }
+
+    /**
+     * Display the same state in all regions of the group in one batch.
+     *
+     * @param type    one of {@link ProgressSwitcher#TYPE_PROGRESS}, {@link
+     *                ProgressSwitcher#TYPE_CONTENT}, {@link ProgressSwitcher#TYPE_EMPTY} or {@link
+     *                ProgressSwitcher#TYPE_ERROR}
+     * @param animate true to animate transitions
+     */
+    public void showAll(final int type, final boolean animate) {
+        final Editor editor = edit();
+        for (final String name : mRegions.keySet()) {
+            editor.setState(name, type);
+        }
+        editor.apply(animate);
+    }
+
+    private void commit(final Map<String, Integer> states, final boolean animate) {
+        ProgressSwitcher.beginTransitionBatch();
+        try {
+            for (final Map.Entry<String, Integer> entry : states.entrySet()) {
+                final Switcher switcher = mRegions.get(entry.getKey());
+                if (switcher != null) {
+                    StateStream.applyState(switcher, entry.getValue(), animate);
+                }
+            }
+        } finally {
+            ProgressSwitcher.endTransitionBatch();
+        }
+    }
+
+    /**
+     * Collects region state changes to be applied in one batch. If state of the same region is
+     * set several times, only the last one is applied.
+     */
+    public class Editor {
+
+        private final Map<String, Integer> mStates = new LinkedHashMap<String, Integer>();
+
+        Editor() {
+        }
+
+        /**
+         * @param type one of {@link ProgressSwitcher#TYPE_PROGRESS}, {@link
+         *             ProgressSwitcher#TYPE_CONTENT}, {@link ProgressSwitcher#TYPE_EMPTY} or
+         *             {@link ProgressSwitcher#TYPE_ERROR}
+         */
+        public Editor setState(final String name, final int type) {
+            if (!mRegions.containsKey(name)) {
+                throw new IllegalArgumentException("Region " + name + " wasn't added to group");
+            }
+            // Fail here rather than in the middle of the batch
+            StateStream.checkType(type);
+            mStates.put(name, type);
+
+            return this;
+        }
+
+        public Editor showProgress(final String name) {
+            return setState(name, ProgressSwitcher.TYPE_PROGRESS);
+        }
+
+        public Editor showContent(final String name) {
+            return setState(name, ProgressSwitcher.TYPE_CONTENT);
+        }
+
+        public Editor showEmpty(final String name) {
+            return setState(name, ProgressSwitcher.TYPE_EMPTY);
+        }
+
+        public Editor showError(final String name) {
+            return setState(name, ProgressSwitcher.TYPE_ERROR);
+        }
+
+        /**
+         * Apply all changes of the batch. If called from a background thread, changes are
+         * posted to the main thread, also in {@link TestMode}.
+         *
+         * @param animate true to animate transitions
+         */
+        public void apply(final boolean animate) {
+            final Map<String, Integer> states = new LinkedHashMap<String, Integer>(mStates);
+            mStates.clear();
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                commit(states, animate);
+            } else {
+                SwitcherClock.get().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        commit(states, animate);
+                    }
+                });
+            }
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package ru.vang.progressswitcher;
+
+import android.os.Looper;
+import android.util.Log;
+
+/**
+ * Debug mode which detects wasteful switcher usage, modeled on {@link android.os.StrictMode}.
+ * Detected problems are counted and, depending on the policy penalties, logged with the stack
+ * trace of the offending call or thrown.
+ * <p/>
+ * <pre>
+ * if (BuildConfig.DEBUG) {
+ *     SwitcherStrictMode.setPolicy(new SwitcherStrictMode.Policy.Builder()
+ *             .detectAll()
+ *             .penaltyLog()
+ *             .build());
+ * }
+ * </pre>
+ * Calls to this class are removed from release builds by the ProGuard rules shipped with the
+ * library.
+ */
+public final class SwitcherStrictMode {
+
+    private static final String TAG = "SwitcherStrictMode";
+
+    /**
+     * State is requested while it is already displayed.
+     */
+    public static final int VIOLATION_REDUNDANT_TRANSITION = 0;
+
+    /**
+     * Switcher is called from a thread other than the main one.
+     */
+    public static final int VIOLATION_WRONG_THREAD = 1;
+
+    /**
+     * State view was inflated, and possibly filled with texts, but never shown.
+     */
+    public static final int VIOLATION_UNUSED_STATE_VIEW = 2;
+
+    /**
+     * Animated transition is requested while the container isn't attached to a window.
+     */
+    public static final int VIOLATION_DETACHED_TRANSITION = 3;
+
+    private static final int VIOLATION_COUNT = 4;
+
+    private static final int PENALTY_LOG = 1;
+
+    private static final int PENALTY_DEATH = 1 << 1;
+
+    private static volatile Policy sPolicy = Policy.LAX;
+
+    private static final int[] sViolationCounts = new int[VIOLATION_COUNT];
+
+    private SwitcherStrictMode() {
+    }
+
+    public static void setPolicy(final Policy policy) {
+        if (policy == null) {
+            throw new NullPointerException("Policy can't be null");
+        }
+        sPolicy = policy;
+    }
+
+    public static Policy getPolicy() {
+        return sPolicy;
+    }
+
+    /**
+     * @param violation one of {@code VIOLATION_*} constants
+     * @return number of detected violations of the type since the last {@link
+     * #resetViolationCounts()}
+     */
+    public static int getViolationCount(final int violation) {
+        synchronized (sViolationCounts) {
+            return sViolationCounts[violation];
+        }
+    }
+
+    public static void resetViolationCounts() {
+        synchronized (sViolationCounts) {
+            for (int i = 0; i < VIOLATION_COUNT; i++) {
+                sViolationCounts[i] = 0;
+            }
+        }
+    }
+
+    static boolean isEnabled() {
+        return sPolicy.mDetectMask != 0;
+    }
+
+    static void onRedundantTransition(final int type) {
+        if (sPolicy.detects(VIOLATION_REDUNDANT_TRANSITION)) {
+            onViolation(VIOLATION_REDUNDANT_TRANSITION,
+                    "Redundant transition to " + SwitcherTrace.typeName(type) + " state");
+        }
+    }
+
+    static void onSwitcherCall(final String method) {
+        if (sPolicy.detects(VIOLATION_WRONG_THREAD) && !TestMode.isEnabled()
+                && Looper.myLooper() != Looper.getMainLooper()) {
+            onViolation(VIOLATION_WRONG_THREAD, method + " called from thread "
+                    + Thread.currentThread().getName());
+        }
+    }
+
+    static void onUnusedStateView(final int type, final boolean hasTexts) {
+        if (sPolicy.detects(VIOLATION_UNUSED_STATE_VIEW)) {
+            onViolation(VIOLATION_UNUSED_STATE_VIEW, "State view for "
+                    + SwitcherTrace.typeName(type) + " state was inflated"
+                    + (hasTexts ? " and filled with texts" : "") + ", but never shown");
+        }
+    }
+
+    static void onDetachedTransition(final int type) {
+        if (sPolicy.detects(VIOLATION_DETACHED_TRANSITION)) {
+            onViolation(VIOLATION_DETACHED_TRANSITION, "Animated transition to "
+                    + SwitcherTrace.typeName(type) + " state in container detached from window");
+        }
+    }
+
+    private static void onViolation(final int violation, final String message) {
+        synchronized (sViolationCounts) {
+            sViolationCounts[violation]++;
+        }
+        final Policy policy = sPolicy;
+        final Violation throwable = new Violation(message);
+        if ((policy.mPenaltyMask & PENALTY_LOG) != 0) {
+            Log.w(TAG, message, throwable);
+        }
+        if ((policy.mPenaltyMask & PENALTY_DEATH) != 0) {
+            throw throwable;
+        }
+    }
+
+    /**
+     * Set of detected violations and penalties applied to them.
+     */
+    public static final class Policy {
+
+        public static final Policy LAX = new Policy(0, 0);
+
+        final int mDetectMask;
+
+        final int mPenaltyMask;
+
+        private Policy(final int detectMask, final int penaltyMask) {
+            mDetectMask = detectMask;
+            mPenaltyMask = penaltyMask;
+        }
+
+        boolean detects(final int violation) {
+            return (mDetectMask & (1 << violation)) != 0;
+        }
+
+        public static final class Builder {
+
+            private int mDetectMask;
+
+            private int mPenaltyMask;
+
+            public Builder detectAll() {
+                mDetectMask = (1 << VIOLATION_COUNT) - 1;
+                return this;
+            }
+
+            public Builder detectRedundantTransitions() {
+                return detect(VIOLATION_REDUNDANT_TRANSITION);
+            }
+
+            public Builder detectWrongThread() {
+                return detect(VIOLATION_WRONG_THREAD);
+            }
+
+            public Builder detectUnusedStateViews() {
+                return detect(VIOLATION_UNUSED_STATE_VIEW);
+            }
+
+            public Builder detectDetachedTransitions() {
+                return detect(VIOLATION_DETACHED_TRANSITION);
+            }
+
+            /**
+             * Log detected violations with the stack trace of the call site.
+             */
+            public Builder penaltyLog() {
+                mPenaltyMask |= PENALTY_LOG;
+                return this;
+            }
+
+            /**
+             * Throw {@link Violation} from the offending call.
+             */
+            public Builder penaltyDeath() {
+                mPenaltyMask |= PENALTY_DEATH;
+                return this;
+            }
+
+            public Policy build() {
+                // Detected violations are always counted, log them if no penalty was chosen
+                final int penaltyMask = mDetectMask != 0 && mPenaltyMask == 0
+                        ? PENALTY_LOG : mPenaltyMask;
+                return new Policy(mDetectMask, penaltyMask);
+            }
+
+            private Builder detect(final int violation) {
+                mDetectMask |= 1 << violation;
+                return this;
+            }
+        }
+    }
+
+    /**
+     * Carries the stack trace of the call which caused a violation.
+     */
+    public static final class Violation extends RuntimeException {
+
+        Violation(final String message) {
+            super(message);
+        }
+    }
+}
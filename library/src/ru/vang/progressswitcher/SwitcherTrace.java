@@ -0,0 +1,91 @@
+package ru.vang.progressswitcher;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Trace;
+
+import ru.vang.progressswitcher.core.StateMachine;
+
+/**
+ * Emits named sections into system traces (systrace, Perfetto) around switcher work: state view
+ * inflation, content lookup, state changes and transitions. Tracing is off by default and
+ * costs only a field read until {@link #setEnabled(boolean)} turns it on. Sections are emitted on
+ * API 18+ only.
+ * <p/>
+ * <pre>
+ * if (BuildConfig.DEBUG) {
+ *     SwitcherTrace.setEnabled(true);
+ * }
+ * </pre>
+ */
+public final class SwitcherTrace {
+
+    private static final String PREFIX = "Switcher.";
+
+    /**
+     * Trace section names are limited by the platform.
+     */
+    private static final int MAX_SECTION_LENGTH = 127;
+
+    private static final boolean SUPPORTED
+            = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
+
+    private static volatile boolean sEnabled;
+
+    private SwitcherTrace() {
+    }
+
+    public static void setEnabled(final boolean enabled) {
+        sEnabled = enabled && SUPPORTED;
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * Begin trace section tagged with the entry point and state type.
+     *
+     * @return true if section was begun and {@link #end(boolean)} should close it
+     */
+    static boolean begin(final String entryPoint, final int type) {
+        if (!sEnabled) {
+            return false;
+        }
+        return beginSection(PREFIX + entryPoint + ':' + typeName(type));
+    }
+
+    /**
+     * Begin trace section tagged with the entry point and arbitrary detail, like layout name.
+     *
+     * @return true if section was begun and {@link #end(boolean)} should close it
+     */
+    static boolean begin(final String entryPoint, final String detail) {
+        if (!sEnabled) {
+            return false;
+        }
+        return beginSection(PREFIX + entryPoint + ':' + detail);
+    }
+
+    static void end(final boolean begun) {
+        if (begun) {
+            endSection();
+        }
+    }
+
+    static String typeName(final int type) {
+        return StateMachine.getStateName(type);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private static boolean beginSection(final String name) {
+        Trace.beginSection(name.length() > MAX_SECTION_LENGTH
+                ? name.substring(0, MAX_SECTION_LENGTH) : name);
+        return true;
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private static void endSection() {
+        Trace.endSection();
+    }
+}
@@ -0,0 +1,71 @@
+package ru.vang.progressswitcher;
+
+/**
+ * Global test mode of the library. While enabled, all transitions are applied without
+ * animation, state changes made on the main thread and their notifications complete
+ * synchronously, and all library timing goes through a {@link ManualClock}, so tests can move
+ * time forward instantly. States posted from other threads are posted to the clock as usual
+ * and are applied when the clock is advanced, which should be done on the main thread.
+ * <p/>
+ * <pre>
+ * ManualClock clock = TestMode.enable();
+ * switcher.showProgress();
+ * clock.advanceBy(5000);
+ * ...
+ * TestMode.disable();
+ * </pre>
+ */
+public final class TestMode {
+
+    private static volatile ManualClock sClock;
+
+    private TestMode() {
+    }
+
+    /**
+     * Enable test mode with a new clock starting from zero.
+     *
+     * @return clock which drives the library
+     */
+    public static ManualClock enable() {
+        return enable(new ManualClock());
+    }
+
+    /**
+     * Enable test mode with the provided clock.
+     *
+     * @param clock clock which will drive the library
+     * @return the same clock
+     */
+    public static ManualClock enable(final ManualClock clock) {
+        if (clock == null) {
+            throw new NullPointerException("Clock can't be null");
+        }
+        sClock = clock;
+        SwitcherClock.set(clock);
+
+        return clock;
+    }
+
+    public static void disable() {
+        sClock = null;
+        SwitcherClock.set(null);
+    }
+
+    public static boolean isEnabled() {
+        return sClock != null;
+    }
+
+    /**
+     * Returns clock of the test mode or null if test mode is disabled.
+     *
+     * @return test clock
+     */
+    public static ManualClock getClock() {
+        return sClock;
+    }
+
+    static boolean shouldAnimate(final boolean animate) {
+        return animate && sClock == null;
+    }
+}
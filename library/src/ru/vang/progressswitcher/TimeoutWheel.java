@@ -0,0 +1,177 @@
+package ru.vang.progressswitcher;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hashed timer wheel which tracks timeouts of all switchers with a single clock callback.
+ * Scheduling and cancelling are O(1): timeouts are kept in doubly linked lists of wheel slots,
+ * and a timeout farther than one wheel turn carries the number of remaining turns. The wheel
+ * ticks only while it has scheduled timeouts. Timeouts fire with tick precision and never
+ * earlier than requested. Must be used on the main thread.
+ */
+final class TimeoutWheel {
+
+    static final long TICK_MS = 100;
+
+    private static final int WHEEL_SIZE = 512;
+
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    private static TimeoutWheel sInstance;
+
+    private final Timeout[] mSlots = new Timeout[WHEEL_SIZE];
+
+    private final List<Timeout> mExpired = new ArrayList<Timeout>();
+
+    private int mCursor;
+
+    private int mCount;
+
+    private long mLastTick;
+
+    private boolean mTicking;
+
+    private final Runnable mTickRunnable = new Runnable() {
+        @Override
+        public void run() {
+            tick();
+        }
+    };
+
+    static TimeoutWheel get() {
+        if (sInstance == null) {
+            sInstance = new TimeoutWheel();
+        }
+        return sInstance;
+    }
+
+    /**
+     * Schedule timeout, rescheduling it if it is already scheduled.
+     */
+    void schedule(final Timeout timeout, final long delayMs) {
+        if (timeout.mWheel != null) {
+            timeout.mWheel.cancel(timeout);
+        }
+        final SwitcherClock clock = SwitcherClock.get();
+        final long now = clock.uptimeMillis();
+        if (!mTicking) {
+            mTicking = true;
+            mLastTick = now;
+            clock.postDelayed(mTickRunnable, TICK_MS);
+        }
+        // Ticks are counted from the last one, round up to fire not earlier than requested
+        final long sinceLastTick = now - mLastTick;
+        final long ticks = Math.max(1, (delayMs + sinceLastTick + TICK_MS - 1) / TICK_MS);
+
+        final int slot = (int) ((mCursor + ticks) & WHEEL_MASK);
+        timeout.mRounds = (ticks - 1) / WHEEL_SIZE;
+        timeout.mSlot = slot;
+        timeout.mWheel = this;
+        timeout.mPrev = null;
+        timeout.mNext = mSlots[slot];
+        if (timeout.mNext != null) {
+            timeout.mNext.mPrev = timeout;
+        }
+        mSlots[slot] = timeout;
+        mCount++;
+    }
+
+    void cancel(final Timeout timeout) {
+        if (timeout.mWheel != this) {
+            return;
+        }
+        unlink(timeout);
+        if (mCount == 0 && mTicking) {
+            mTicking = false;
+            SwitcherClock.get().removeCallbacks(mTickRunnable);
+        }
+    }
+
+    int getScheduledCount() {
+        return mCount;
+    }
+
+    private void tick() {
+        final SwitcherClock clock = SwitcherClock.get();
+        final long now = clock.uptimeMillis();
+        // Catch up if the callback was delayed by a busy main thread
+        final long ticks = Math.max(1, (now - mLastTick) / TICK_MS);
+        mLastTick += ticks * TICK_MS;
+        for (long i = 0; i < ticks; i++) {
+            if (mCount == 0) {
+                // Nothing left to expire, just keep the cursor in step with the clock
+                mCursor = (int) ((mCursor + ticks - i) & WHEEL_MASK);
+                break;
+            }
+            mCursor = (mCursor + 1) & WHEEL_MASK;
+            expireSlot(mCursor);
+        }
+        // Callbacks are invoked after the slots are updated, so they may schedule and cancel
+        try {
+            for (int i = 0, size = mExpired.size(); i < size; i++) {
+                mExpired.get(i).onExpired();
+            }
+        } finally {
+            mExpired.clear();
+        }
+        if (mCount > 0) {
+            mTicking = true;
+            clock.removeCallbacks(mTickRunnable);
+            clock.postDelayed(mTickRunnable, Math.max(0, mLastTick + TICK_MS - now));
+        } else {
+            mTicking = false;
+        }
+    }
+
+    private void expireSlot(final int slot) {
+        Timeout timeout = mSlots[slot];
+        while (timeout != null) {
+            final Timeout next = timeout.mNext;
+            if (timeout.mRounds > 0) {
+                timeout.mRounds--;
+            } else {
+                unlink(timeout);
+                mExpired.add(timeout);
+            }
+            timeout = next;
+        }
+    }
+
+    private void unlink(final Timeout timeout) {
+        if (timeout.mPrev != null) {
+            timeout.mPrev.mNext = timeout.mNext;
+        } else {
+            mSlots[timeout.mSlot] = timeout.mNext;
+        }
+        if (timeout.mNext != null) {
+            timeout.mNext.mPrev = timeout.mPrev;
+        }
+        timeout.mPrev = timeout.mNext = null;
+        timeout.mWheel = null;
+        mCount--;
+    }
+
+    /**
+     * Entry of the wheel. The same instance can be scheduled again after it expired or was
+     * cancelled.
+     */
+    abstract static class Timeout {
+
+        TimeoutWheel mWheel;
+
+        Timeout mPrev;
+
+        Timeout mNext;
+
+        int mSlot;
+
+        long mRounds;
+
+        boolean isScheduled() {
+            return mWheel != null;
+        }
+
+        abstract void onExpired();
+    }
+}
@@ -0,0 +1,26 @@
+package ru.vang.progressswitcher;
+
+import android.view.View;
+
+/**
+ * Performs transition between state views of a switcher. Engine is responsible for visibility
+ * of both views: after the transition the hidden view must be {@link View#GONE} and the shown
+ * view must be {@link View#VISIBLE}.
+ *
+ * @see ProgressSwitcher#setTransitionEngine(TransitionEngine)
+ * @see AnimationTransition
+ * @see PropertyAnimatorTransition
+ */
+public interface TransitionEngine {
+
+    /**
+     * Hide currently shown view and display the new one. A new transition may be started
+     * before the previous one has finished.
+     *
+     * @param from    currently shown view or null
+     * @param to      view to be shown or null if nothing should be shown
+     * @param animate If true, the views should be animated, false otherwise.
+     */
+    public void transition(View from, View to, boolean animate);
+
+}
@@ -0,0 +1,64 @@
+package ru.vang.progressswitcher;
+
+import android.app.Activity;
+import android.content.Context;
+import android.os.Bundle;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+/**
+ * Hosts a content view inside an ancestor which counts its measure and layout passes.
+ */
+public class LayoutTestActivity extends Activity {
+
+    private CountingLayout mAncestor;
+
+    private View mContent;
+
+    @Override
+    protected void onCreate(final Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        mAncestor = new CountingLayout(this);
+        mContent = new View(this);
+        mAncestor.addView(mContent, new FrameLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        setContentView(mAncestor);
+    }
+
+    CountingLayout getAncestor() {
+        return mAncestor;
+    }
+
+    View getContent() {
+        return mContent;
+    }
+
+    static class CountingLayout extends FrameLayout {
+
+        int mMeasureCount;
+
+        int mLayoutCount;
+
+        CountingLayout(final Context context) {
+            super(context);
+        }
+
+        void resetCounts() {
+            mMeasureCount = mLayoutCount = 0;
+        }
+
+        @Override
+        protected void onMeasure(final int widthMeasureSpec, final int heightMeasureSpec) {
+            mMeasureCount++;
+            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        }
+
+        @Override
+        protected void onLayout(final boolean changed, final int left, final int top,
+                final int right, final int bottom) {
+            mLayoutCount++;
+            super.onLayout(changed, left, top, right, bottom);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package ru.vang.progressswitcher;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.os.Build;
+import android.test.InstrumentationTestCase;
+import android.view.Choreographer;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts reveals applied per frame for many switchers revealed at once.
+ */
+public class RevealSchedulerTest extends InstrumentationTestCase {
+
+    private static final int SWITCHER_COUNT = 20;
+
+    private static final int MAX_REVEALS = 3;
+
+    private static final long FRAME_TIMEOUT_MS = 2000;
+
+    private final List<ProgressSwitcher> mSwitchers = new ArrayList<ProgressSwitcher>();
+
+    private final int[] mPendingAfterFrame = new int[3];
+
+    private final boolean[] mRevealed = new boolean[SWITCHER_COUNT];
+
+    private RevealScheduler mScheduler;
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    public void testManyRevealsAreSpreadOverFrames() throws Throwable {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            return;
+        }
+        final CountDownLatch latch = new CountDownLatch(mPendingAfterFrame.length);
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                mScheduler = new RevealScheduler();
+                mScheduler.setMaxRevealsPerFrame(MAX_REVEALS);
+                final Context context = getInstrumentation().getTargetContext();
+                for (int i = 0; i < SWITCHER_COUNT; i++) {
+                    final FrameLayout parent = new FrameLayout(context);
+                    parent.addView(new View(context));
+                    final ProgressSwitcher switcher
+                            = ProgressSwitcher.fromContentView(context, parent.getChildAt(0));
+                    switcher.setRevealScheduler(mScheduler);
+                    mSwitchers.add(switcher);
+                }
+                for (int i = 0; i < SWITCHER_COUNT; i++) {
+                    mSwitchers.get(i).showContent(false);
+                }
+                // Posted after the scheduler, so it runs right after it in each frame
+                Choreographer.getInstance().postFrameCallback(new Choreographer.FrameCallback() {
+                    private int mFrame;
+
+                    @Override
+                    public void doFrame(final long frameTimeNanos) {
+                        mPendingAfterFrame[mFrame++] = mScheduler.getPendingCount();
+                        if (mFrame < mPendingAfterFrame.length) {
+                            Choreographer.getInstance().postFrameCallback(this);
+                        } else {
+                            for (int i = 0; i < SWITCHER_COUNT; i++) {
+                                mRevealed[i] = mSwitchers.get(i).getShownContentType()
+                                        == ProgressSwitcher.TYPE_CONTENT;
+                            }
+                        }
+                        latch.countDown();
+                    }
+                });
+            }
+        });
+        assertTrue("Frames weren't drawn", latch.await(FRAME_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+
+        for (int i = 0; i < mPendingAfterFrame.length; i++) {
+            assertEquals(SWITCHER_COUNT - MAX_REVEALS * (i + 1), mPendingAfterFrame[i]);
+        }
+        for (int i = 0; i < SWITCHER_COUNT; i++) {
+            assertEquals(i < MAX_REVEALS * mPendingAfterFrame.length, mRevealed[i]);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package ru.vang.progressswitcher;
+
+import android.test.ActivityInstrumentationTestCase2;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts layout passes of an ancestor of the switcher container per state transition.
+ */
+public class SwitcherContainerTest extends ActivityInstrumentationTestCase2<LayoutTestActivity> {
+
+    private static final long FRAME_TIMEOUT_MS = 2000;
+
+    private ProgressSwitcher mSwitcher;
+
+    public SwitcherContainerTest() {
+        super(LayoutTestActivity.class);
+    }
+
+    public void testLayoutBoundaryKeepsAncestorLayout() throws Throwable {
+        createSwitcher(true);
+        final LayoutTestActivity.CountingLayout ancestor = getActivity().getAncestor();
+        ancestor.resetCounts();
+
+        showContentAndWaitForFrames(1);
+
+        assertEquals(0, ancestor.mMeasureCount);
+        assertEquals(0, ancestor.mLayoutCount);
+        assertContentLaidOut();
+    }
+
+    public void testTransitionLaysOutAncestorWithoutBoundary() throws Throwable {
+        createSwitcher(false);
+        final LayoutTestActivity.CountingLayout ancestor = getActivity().getAncestor();
+        ancestor.resetCounts();
+
+        showContentAndWaitForFrames(1);
+
+        assertTrue(ancestor.mMeasureCount > 0);
+        assertTrue(ancestor.mLayoutCount > 0);
+        assertContentLaidOut();
+    }
+
+    public void testLayoutBoundaryPassesContainerLayoutRequests() throws Throwable {
+        createSwitcher(true);
+        final LayoutTestActivity.CountingLayout ancestor = getActivity().getAncestor();
+        ancestor.resetCounts();
+
+        final View container = (View) mSwitcher.getContentView().getParent();
+        waitForFrames(1, new Runnable() {
+            @Override
+            public void run() {
+                container.setVisibility(View.GONE);
+            }
+        });
+
+        assertTrue(ancestor.mMeasureCount > 0);
+        assertTrue(ancestor.mLayoutCount > 0);
+    }
+
+    private void createSwitcher(final boolean layoutBoundary) throws Throwable {
+        final LayoutTestActivity activity = getActivity();
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                mSwitcher = ProgressSwitcher.fromContentView(activity, activity.getContent());
+                mSwitcher.setLayoutBoundary(layoutBoundary);
+            }
+        });
+        getInstrumentation().waitForIdleSync();
+        waitForFrames(1, null);
+    }
+
+    private void showContentAndWaitForFrames(final int frames) throws Throwable {
+        waitForFrames(frames, new Runnable() {
+            @Override
+            public void run() {
+                mSwitcher.showContent(false);
+            }
+        });
+    }
+
+    private void waitForFrames(final int frames, final Runnable action) throws Throwable {
+        final CountDownLatch latch = new CountDownLatch(frames);
+        final View ancestor = getActivity().getAncestor();
+        final ViewTreeObserver.OnPreDrawListener listener
+                = new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                latch.countDown();
+                return true;
+            }
+        };
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                ancestor.getViewTreeObserver().addOnPreDrawListener(listener);
+                if (action != null) {
+                    action.run();
+                }
+                ancestor.invalidate();
+            }
+        });
+        try {
+            assertTrue("Frame wasn't drawn", latch.await(FRAME_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        } finally {
+            runTestOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    ancestor.getViewTreeObserver().removeOnPreDrawListener(listener);
+                }
+            });
+        }
+    }
+
+    private void assertContentLaidOut() {
+        final View content = mSwitcher.getContentView();
+        final View container = (View) content.getParent();
+        assertEquals(View.VISIBLE, content.getVisibility());
+        assertEquals(container.getWidth(), content.getWidth());
+        assertEquals(container.getHeight(), content.getHeight());
+    }
+}
@@ -0,0 +1,286 @@
+package ru.vang.progressswitcher;
+
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Debug;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Measures memory retained by switchers, to be run from instrumentation tests of the library and
+ * compared between versions. {@link #measure(String, Factory, int)} creates a number of
+ * instances of an entry point, e.g. {@link ProgressWidget}, {@link ProgressFragment} or {@link
+ * ProgressSwitcher.Builder}, keeps them reachable and reports the heap growth per instance,
+ * together with the breakdown of the first instance by state view. Reports are written as JSON.
+ * <p/>
+ * <pre>
+ * List&lt;SwitcherFootprint.Entry&gt; entries = new ArrayList&lt;SwitcherFootprint.Entry&gt;();
+ * entries.add(SwitcherFootprint.measure("ProgressWidget", widgetFactory, 100));
+ * SwitcherFootprint.writeReport(entries, writer);
+ * </pre>
+ * Must be called on the main thread. The class is part of the instrumentation test sources,
+ * so it isn't shipped with the library.
+ */
+public final class SwitcherFootprint {
+
+    private static final int GC_PASSES = 3;
+
+    private static final int[] STATE_TYPES = {
+            ProgressSwitcher.TYPE_PROGRESS, ProgressSwitcher.TYPE_CONTENT,
+            ProgressSwitcher.TYPE_EMPTY, ProgressSwitcher.TYPE_ERROR
+    };
+
+    /**
+     * Creates instances of the measured entry point.
+     */
+    public interface Factory {
+
+        /**
+         * @return {@link ProgressSwitcher}, {@link ProgressWidget} or {@link ProgressFragment}
+         * with created views, e.g. a fragment added to an activity and executed with {@link
+         * android.support.v4.app.FragmentManager#executePendingTransactions()}
+         */
+        public Object create();
+    }
+
+    private SwitcherFootprint() {
+    }
+
+    /**
+     * Create instances and measure heap retained by each of them.
+     *
+     * @param name      name of the entry point in the report
+     * @param factory   factory of instances
+     * @param instances number of instances to create
+     * @return measured footprint
+     */
+    public static Entry measure(final String name, final Factory factory, final int instances) {
+        if (instances <= 0) {
+            throw new IllegalArgumentException("Instance count must be positive");
+        }
+        // Warm up class loading and resource caches
+        final ProgressSwitcher warmUp = resolve(factory.create());
+        if (warmUp == null || warmUp.getContentContainer() == null) {
+            throw new IllegalArgumentException(name + " has no switcher with created views");
+        }
+        collectGarbage();
+
+        final long javaBefore = usedJavaHeap();
+        final long nativeBefore = Debug.getNativeHeapAllocatedSize();
+        final List<Object> retained = new ArrayList<Object>(instances);
+        for (int i = 0; i < instances; i++) {
+            retained.add(factory.create());
+        }
+        collectGarbage();
+        final long javaBytes = usedJavaHeap() - javaBefore;
+        final long nativeBytes = Debug.getNativeHeapAllocatedSize() - nativeBefore;
+
+        final Entry entry = new Entry(name, instances, javaBytes / instances,
+                nativeBytes / instances);
+        final ProgressSwitcher switcher = resolve(retained.get(0));
+        for (final int type : STATE_TYPES) {
+            final View view = switcher.getStateView(type);
+            if (view != null) {
+                entry.mStates.add(measureView(SwitcherTrace.typeName(type), view));
+            }
+        }
+        retained.clear();
+
+        return entry;
+    }
+
+    /**
+     * Measure views of a single state view hierarchy.
+     */
+    public static StateFootprint measureView(final String state, final View view) {
+        final StateFootprint footprint = new StateFootprint(state);
+        collect(view, footprint, new IdentityHashMap<Bitmap, Boolean>());
+
+        return footprint;
+    }
+
+    /**
+     * Write entries as JSON array, one object per entry point.
+     */
+    public static void writeReport(final List<Entry> entries, final Writer writer)
+            throws IOException {
+        final JSONArray report = new JSONArray();
+        try {
+            for (final Entry entry : entries) {
+                report.put(entry.toJson());
+            }
+        } catch (JSONException e) {
+            // IOException(String, Throwable) is available from API 9 only
+            final IOException exception = new IOException("Can't build report");
+            exception.initCause(e);
+            throw exception;
+        }
+        writer.write(report.toString());
+        writer.flush();
+    }
+
+    private static ProgressSwitcher resolve(final Object instance) {
+        if (instance instanceof ProgressSwitcher) {
+            return (ProgressSwitcher) instance;
+        } else if (instance instanceof ProgressWidget) {
+            return ((ProgressWidget) instance).getProgressSwitcher();
+        } else if (instance instanceof ProgressFragment) {
+            return ((ProgressFragment) instance).getProgressSwitcher();
+        }
+        return null;
+    }
+
+    private static void collect(final View view, final StateFootprint footprint,
+            final IdentityHashMap<Bitmap, Boolean> counted) {
+        footprint.mViewCount++;
+        countDrawable(view.getBackground(), footprint, counted);
+        if (view instanceof ImageView) {
+            countDrawable(((ImageView) view).getDrawable(), footprint, counted);
+        }
+        if (view instanceof ViewGroup) {
+            final ViewGroup group = (ViewGroup) view;
+            for (int i = 0, count = group.getChildCount(); i < count; i++) {
+                collect(group.getChildAt(i), footprint, counted);
+            }
+        }
+    }
+
+    private static void countDrawable(final Drawable drawable, final StateFootprint footprint,
+            final IdentityHashMap<Bitmap, Boolean> counted) {
+        if (drawable == null) {
+            return;
+        }
+        footprint.mDrawableCount++;
+        if (!(drawable instanceof BitmapDrawable)) {
+            return;
+        }
+        final Bitmap bitmap = ((BitmapDrawable) drawable).getBitmap();
+        if (bitmap != null && counted.put(bitmap, Boolean.TRUE) == null) {
+            footprint.mBitmapBytes += (long) bitmap.getRowBytes() * bitmap.getHeight();
+        }
+    }
+
+    private static void collectGarbage() {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < GC_PASSES; i++) {
+            runtime.gc();
+            runtime.runFinalization();
+        }
+    }
+
+    private static long usedJavaHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Footprint of one entry point.
+     */
+    public static final class Entry {
+
+        private final String mName;
+
+        private final int mInstances;
+
+        private final long mJavaBytesPerInstance;
+
+        private final long mNativeBytesPerInstance;
+
+        private final List<StateFootprint> mStates = new ArrayList<StateFootprint>();
+
+        Entry(final String name, final int instances, final long javaBytesPerInstance,
+                final long nativeBytesPerInstance) {
+            mName = name;
+            mInstances = instances;
+            mJavaBytesPerInstance = javaBytesPerInstance;
+            mNativeBytesPerInstance = nativeBytesPerInstance;
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        public long getJavaBytesPerInstance() {
+            return mJavaBytesPerInstance;
+        }
+
+        public long getNativeBytesPerInstance() {
+            return mNativeBytesPerInstance;
+        }
+
+        public List<StateFootprint> getStates() {
+            return mStates;
+        }
+
+        JSONObject toJson() throws JSONException {
+            final JSONObject json = new JSONObject();
+            json.put("name", mName);
+            json.put("instances", mInstances);
+            json.put("javaBytesPerInstance", mJavaBytesPerInstance);
+            json.put("nativeBytesPerInstance", mNativeBytesPerInstance);
+            final JSONArray states = new JSONArray();
+            for (final StateFootprint state : mStates) {
+                states.put(state.toJson());
+            }
+            json.put("states", states);
+
+            return json;
+        }
+    }
+
+    /**
+     * Views, drawables and bitmap memory of one state view hierarchy.
+     */
+    public static final class StateFootprint {
+
+        private final String mState;
+
+        int mViewCount;
+
+        int mDrawableCount;
+
+        long mBitmapBytes;
+
+        StateFootprint(final String state) {
+            mState = state;
+        }
+
+        public String getState() {
+            return mState;
+        }
+
+        public int getViewCount() {
+            return mViewCount;
+        }
+
+        public int getDrawableCount() {
+            return mDrawableCount;
+        }
+
+        public long getBitmapBytes() {
+            return mBitmapBytes;
+        }
+
+        JSONObject toJson() throws JSONException {
+            final JSONObject json = new JSONObject();
+            json.put("state", mState);
+            json.put("views", mViewCount);
+            json.put("drawables", mDrawableCount);
+            json.put("bitmapBytes", mBitmapBytes);
+
+            return json;
+        }
+    }
+}